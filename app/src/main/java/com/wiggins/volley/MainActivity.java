@@ -4,30 +4,34 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.View;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.TextView;
 
+import com.android.volley.Request;
 import com.android.volley.VolleyError;
-import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 import com.wiggins.volley.adapter.TodayHistoryQueryAdapter;
 import com.wiggins.volley.base.BaseActivity;
-import com.wiggins.volley.bean.ResultDesc;
+import com.wiggins.volley.bean.ResultData;
 import com.wiggins.volley.bean.TodayHistoryQuery;
-import com.wiggins.volley.http.HttpRequestUtil;
-import com.wiggins.volley.listener.HttpListener;
+import com.wiggins.volley.bean.TodayHistoryQueryDetail;
+import com.wiggins.volley.db.EventStore;
+import com.wiggins.volley.http.CachePolicy;
+import com.wiggins.volley.http.HttpCall;
+import com.wiggins.volley.http.RequestPrefetcher;
+import com.wiggins.volley.http.SizedImageLoader;
+import com.wiggins.volley.listener.ResultListener;
 import com.wiggins.volley.utils.Constant;
 import com.wiggins.volley.utils.StringUtil;
 import com.wiggins.volley.utils.ToastUtil;
 import com.wiggins.volley.utils.UIUtils;
 import com.wiggins.volley.widget.TitleView;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -35,6 +39,14 @@ import java.util.Map;
 
 public class MainActivity extends BaseActivity implements View.OnClickListener {
 
+    private static final Type QUERY_TYPE = new TypeToken<List<TodayHistoryQuery>>() {
+    }.getType();
+    // 事件列表按日期不变，1小时内直接使用缓存，7天内先显示缓存再后台刷新
+    private static final CachePolicy QUERY_CACHE_POLICY = CachePolicy.staleWhileRevalidate(60 * 60 * 1000L, 7 * 24 * 60 * 60 * 1000L);
+    private static final int PREFETCH_DETAIL_COUNT = 5;//列表加载完成或停止滚动后预加载详情的事件数
+    private static final int PREFETCH_MAX_CONCURRENT = 1;//同时进行的详情预加载请求数
+    private static final String STATE_QUERY_DATE = "query_date";//保存页面状态时查询日期的key
+
     private MainActivity mActivity = null;
     private TitleView titleView;
     private EditText mEdtData;
@@ -44,8 +56,12 @@ public class MainActivity extends BaseActivity implements View.OnClickListener {
 
     private List<TodayHistoryQuery> todayHistoryQuery;
     private TodayHistoryQueryAdapter todayHistoryQueryAdapter;
-    private Gson gson = null;
+    private HttpCall<ResultData<List<TodayHistoryQuery>>> queryCall;//进行中的事件列表请求
+    private RequestPrefetcher detailPrefetcher;//事件详情预加载
+    private List<SizedImageLoader.ImageContainer> picturePrefetches = new ArrayList<>();//预加载中的详情图片
     private String data = "";
+    private boolean showingNetworkResult;//当前查询已显示接口返回的数据，本地数据不再覆盖
+    private boolean showingStoredResult;//当前查询已显示本地数据，接口请求失败时不再提示
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -56,12 +72,23 @@ public class MainActivity extends BaseActivity implements View.OnClickListener {
         initView();
         initData();
         setLinstener();
+
+        // 页面重建（如屏幕旋转）后从本地数据恢复上次查询的事件列表
+        if (savedInstanceState != null) {
+            data = savedInstanceState.getString(STATE_QUERY_DATE, "");
+            if (!StringUtil.isEmpty(data)) {
+                getTodayHistoryQuery();
+            }
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_QUERY_DATE, data);
     }
 
     private void initData() {
-        if (gson == null) {
-            gson = new Gson();
-        }
         if (todayHistoryQuery == null) {
             todayHistoryQuery = new ArrayList<>();
         }
@@ -72,9 +99,9 @@ public class MainActivity extends BaseActivity implements View.OnClickListener {
             todayHistoryQueryAdapter.notifyDataSetChanged();
         }
         // 自定义Gson数据请求示例
-        // HttpRequestUtil.requestGson(Request.Method.GET, "http://www.weather.com.cn/data/sk/101010100.html", Weather.class, null);
+        // requestGson(Request.Method.GET, "http://www.weather.com.cn/data/sk/101010100.html", Weather.class, null);
         // 自定义Xml数据请求示例
-        // HttpRequestUtil.requestXml(Request.Method.GET, "http://flash.weather.com.cn/wmaps/xml/china.xml", null);
+        // requestXml(Request.Method.GET, "http://flash.weather.com.cn/wmaps/xml/china.xml", null);
     }
 
     private void initView() {
@@ -86,6 +113,7 @@ public class MainActivity extends BaseActivity implements View.OnClickListener {
         mTvEmpty = (TextView) findViewById(R.id.tv_empty);
         mLvData = (ListView) findViewById(R.id.lv_data);
         mLvData.setEmptyView(mTvEmpty);
+        detailPrefetcher = new RequestPrefetcher(PREFETCH_MAX_CONCURRENT);
     }
 
     private void setLinstener() {
@@ -100,44 +128,128 @@ public class MainActivity extends BaseActivity implements View.OnClickListener {
                 startActivity(intent);
             }
         });
+        mLvData.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+                if (scrollState == SCROLL_STATE_IDLE) {
+                    prefetchDetails(view.getFirstVisiblePosition(), view.getChildCount());
+                }
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        cancelPrefetches();
+        super.onDestroy();
     }
 
     /**
-     * @Description 历史上的今天 事件列表
+     * @Description 以低优先级预加载事件详情和详情的第一张图片，点击进入详情页时直接命中缓存
+     * 详情请求与详情页使用相同的参数和缓存策略，预加载未完成时进入详情页会合并到同一个请求
+     *
+     * @param position 第一个预加载的位置
+     * @param count    预加载的事件数，最多PREFETCH_DETAIL_COUNT个
+     */
+    private void prefetchDetails(int position, int count) {
+        int end = Math.min(todayHistoryQuery.size(), position + Math.min(count, PREFETCH_DETAIL_COUNT));
+        for (int i = Math.max(position, 0); i < end; i++) {
+            final String eId = String.valueOf(todayHistoryQuery.get(i).getE_id());
+            detailPrefetcher.prefetch(eId, new RequestPrefetcher.Task() {
+                @Override
+                public HttpCall<?> start(Object tag, final RequestPrefetcher.Callback done) {
+                    return TodayHistoryDetailActivity.queryDetail(eId, tag, Request.Priority.LOW, new ResultListener<List<TodayHistoryQueryDetail>>() {
+                        @Override
+                        public void onSuccess(ResultData<List<TodayHistoryQueryDetail>> resultData) {
+                            super.onSuccess(resultData);
+                            if (resultData.getError_code() == 0) {
+                                SizedImageLoader.ImageContainer container = TodayHistoryDetailActivity.prefetchFirstPicture(mActivity, resultData.getResult());
+                                if (container != null) {
+                                    picturePrefetches.add(container);
+                                }
+                            }
+                            done.onDone(resultData.getError_code() == 0);
+                        }
+
+                        @Override
+                        public void onFailure(VolleyError volleyError) {
+                            super.onFailure(volleyError);
+                            done.onDone(false);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    private void cancelPrefetches() {
+        detailPrefetcher.cancelAll();
+        for (SizedImageLoader.ImageContainer container : picturePrefetches) {
+            container.cancelRequest();
+        }
+        picturePrefetches.clear();
+    }
+
+    /**
+     * @Description 历史上的今天 事件列表，先显示本地保存的列表，再用接口返回的数据更新
      */
     private void getTodayHistoryQuery() {
         Map<String, String> params = new HashMap<>();
         params.put("key", Constant.APP_KEY);
         params.put("date", data);
-        HttpRequestUtil.getString(Constant.queryEvent, params, new HttpListener() {
+        // 新的查询发出后之前的结果不再需要，取消之前进行中的请求
+        if (queryCall != null) {
+            queryCall.cancel();
+        }
+        cancelPrefetches();
+        showingNetworkResult = false;
+        showingStoredResult = false;
+        final String queryDate = data;
+        EventStore.getInstance().loadEvents(queryDate, new EventStore.Callback<List<TodayHistoryQuery>>() {
             @Override
-            public void onSuccess(ResultDesc resultDesc) {
-                super.onSuccess(resultDesc);
+            public void onLoaded(List<TodayHistoryQuery> events) {
+                // 接口数据已返回或已发起其它日期的查询时忽略
+                if (events == null || showingNetworkResult || !queryDate.equals(data) || isFinishing()) {
+                    return;
+                }
+                showingStoredResult = true;
                 todayHistoryQuery.clear();
-                if (resultDesc.getError_code() == 0) {
-                    try {
-                        JSONArray jsonArray = new JSONArray(resultDesc.getResult());
-                        for (int i = 0; i < jsonArray.length(); i++) {
-                            JSONObject jsonObject = (JSONObject) jsonArray.get(i);
-                            TodayHistoryQuery bean = gson.fromJson(jsonObject.toString(), TodayHistoryQuery.class);
-                            todayHistoryQuery.add(bean);
-                        }
-                    } catch (JSONException e) {
-                        e.printStackTrace();
+                todayHistoryQuery.addAll(events);
+                todayHistoryQueryAdapter.setData(todayHistoryQuery);
+            }
+        });
+        queryCall = getResult(Constant.queryEvent, params, QUERY_TYPE, QUERY_CACHE_POLICY, new ResultListener<List<TodayHistoryQuery>>() {
+            @Override
+            public void onSuccess(ResultData<List<TodayHistoryQuery>> resultData) {
+                super.onSuccess(resultData);
+                if (resultData.getError_code() == 0) {
+                    showingNetworkResult = true;
+                    todayHistoryQuery.clear();
+                    if (resultData.getResult() != null) {
+                        todayHistoryQuery.addAll(resultData.getResult());
                     }
+                    EventStore.getInstance().saveEvents(queryDate, todayHistoryQuery);
 
                     todayHistoryQueryAdapter.setData(todayHistoryQuery);
                     Log.e(Constant.LOG_TAG, "历史上的今天 - 事件列表:" + todayHistoryQuery.toString());
-                } else {
+                    prefetchDetails(0, PREFETCH_DETAIL_COUNT);
+                } else if (!showingStoredResult) {
+                    todayHistoryQuery.clear();
                     todayHistoryQueryAdapter.setData(todayHistoryQuery);
-                    ToastUtil.showText(resultDesc.getReason());
+                    ToastUtil.showText(resultData.getReason());
                 }
             }
 
             @Override
             public void onFailure(VolleyError volleyError) {
                 super.onFailure(volleyError);
-                ToastUtil.showText(volleyError.getMessage());
+                if (!showingStoredResult) {
+                    ToastUtil.showText(volleyError.getMessage());
+                }
             }
         });
     }
@@ -1,30 +1,35 @@
 package com.wiggins.volley;
 
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.text.method.ScrollingMovementMethod;
 import android.util.Log;
+import android.widget.ImageView;
 import android.widget.ListView;
 import android.widget.TextView;
 
+import com.android.volley.Request;
 import com.android.volley.VolleyError;
-import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 import com.wiggins.volley.adapter.QueryDetailPicAdapter;
 import com.wiggins.volley.base.BaseActivity;
 import com.wiggins.volley.bean.QueryDetailPicUrl;
-import com.wiggins.volley.bean.ResultDesc;
+import com.wiggins.volley.bean.ResultData;
 import com.wiggins.volley.bean.TodayHistoryQueryDetail;
+import com.wiggins.volley.db.EventStore;
+import com.wiggins.volley.http.CachePolicy;
+import com.wiggins.volley.http.HttpCall;
 import com.wiggins.volley.http.HttpRequestUtil;
-import com.wiggins.volley.listener.HttpListener;
+import com.wiggins.volley.http.ListImagePrefetcher;
+import com.wiggins.volley.http.SizedImageLoader;
+import com.wiggins.volley.listener.ResultListener;
 import com.wiggins.volley.utils.Constant;
 import com.wiggins.volley.utils.ToastUtil;
 import com.wiggins.volley.utils.UIUtils;
 import com.wiggins.volley.widget.TitleView;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -37,6 +42,12 @@ import java.util.Map;
 
 public class TodayHistoryDetailActivity extends BaseActivity {
 
+    private static final Type DETAIL_TYPE = new TypeToken<List<TodayHistoryQueryDetail>>() {
+    }.getType();
+    // 事件详情基本不会变化，1天内直接使用缓存，网络失败时使用过期缓存
+    private static final CachePolicy DETAIL_CACHE_POLICY = CachePolicy.cacheFirst(24 * 60 * 60 * 1000L);
+    private static final int PREFETCH_MAX_ROWS = 4;//图片列表最多预加载的行数
+
     private TodayHistoryDetailActivity mActivity = null;
     private TitleView titleView;
     private TextView mTvDetailTitle;
@@ -47,9 +58,11 @@ public class TodayHistoryDetailActivity extends BaseActivity {
     private List<TodayHistoryQueryDetail> todayHistoryQueryDetail;
     private List<QueryDetailPicUrl> queryDetailPicUrls;
     private QueryDetailPicAdapter queryDetailPicAdapter;
-    private Gson gson = null;
+    private ListImagePrefetcher imagePrefetcher;
 
     private String e_id = "";
+    private boolean showingNetworkResult;//已显示接口返回的数据，本地数据不再覆盖
+    private boolean showingStoredResult;//已显示本地数据，接口请求失败时不再提示
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -74,9 +87,6 @@ public class TodayHistoryDetailActivity extends BaseActivity {
     }
 
     private void initData() {
-        if (gson == null) {
-            gson = new Gson();
-        }
         if (todayHistoryQueryDetail == null) {
             todayHistoryQueryDetail = new ArrayList<>();
         }
@@ -86,6 +96,11 @@ public class TodayHistoryDetailActivity extends BaseActivity {
         if (queryDetailPicAdapter == null) {
             queryDetailPicAdapter = new QueryDetailPicAdapter(queryDetailPicUrls, mActivity);
             mLvData.setAdapter(queryDetailPicAdapter);
+            //行被回收时取消其图片加载
+            mLvData.setRecyclerListener(queryDetailPicAdapter);
+            //按滚动方向预加载即将显示的图片
+            imagePrefetcher = new ListImagePrefetcher(HttpRequestUtil.getSizedImageLoader(), queryDetailPicAdapter, R.id.iv_url, PREFETCH_MAX_ROWS);
+            mLvData.setOnScrollListener(imagePrefetcher);
         } else {
             queryDetailPicAdapter.notifyDataSetChanged();
         }
@@ -98,50 +113,119 @@ public class TodayHistoryDetailActivity extends BaseActivity {
         getTodayHistoryQueryDetail();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (imagePrefetcher != null) {
+            imagePrefetcher.cancelAll();
+        }
+    }
+
     /**
-     * @Description 历史上的今天 事件列表详情
+     * @Description 请求事件详情，页面和预加载使用相同的参数、类型和缓存策略，预加载的结果可直接命中缓存或合并到进行中的请求
+     *
+     * @param eId      事件id
+     * @param tag      请求标签
+     * @param priority 请求优先级，预加载使用Request.Priority.LOW
      */
-    private void getTodayHistoryQueryDetail() {
+    public static HttpCall<ResultData<List<TodayHistoryQueryDetail>>> queryDetail(final String eId, Object tag, Request.Priority priority,
+                                                                                final ResultListener<List<TodayHistoryQueryDetail>> listener) {
         Map<String, String> params = new HashMap<>();
         params.put("key", Constant.APP_KEY);
-        params.put("e_id", e_id);
-        HttpRequestUtil.postString(Constant.queryDetail, params, new HttpListener() {
+        params.put("e_id", eId);
+        return HttpRequestUtil.postResult(Constant.queryDetail, params, DETAIL_TYPE, DETAIL_CACHE_POLICY, tag, priority, new ResultListener<List<TodayHistoryQueryDetail>>() {
             @Override
-            public void onSuccess(ResultDesc resultDesc) {
-                super.onSuccess(resultDesc);
-                todayHistoryQueryDetail.clear();
-                queryDetailPicUrls.clear();
-                mTvDetailTitle.setText("");
-                mTvDetailContent.setText("");
-                if (resultDesc.getError_code() == 0) {
-                    try {
-                        JSONArray jsonArray = new JSONArray(resultDesc.getResult());
-                        for (int i = 0; i < jsonArray.length(); i++) {
-                            JSONObject jsonObject = (JSONObject) jsonArray.get(i);
-                            TodayHistoryQueryDetail bean = gson.fromJson(jsonObject.toString(), TodayHistoryQueryDetail.class);
-                            todayHistoryQueryDetail.add(bean);
-                        }
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                    }
-
-                    mTvDetailTitle.setText(todayHistoryQueryDetail.get(0).getTitle().trim());
-                    mTvDetailContent.setText(todayHistoryQueryDetail.get(0).getContent().trim());
-                    queryDetailPicUrls.addAll(todayHistoryQueryDetail.get(0).getPicUrl());
-                    queryDetailPicAdapter.setData(queryDetailPicUrls);
-
-                    Log.e(Constant.LOG_TAG, "历史上的今天 - 事件详情:" + todayHistoryQueryDetail.toString());
-                    Log.e(Constant.LOG_TAG, "历史上的今天 - 事件详情 - 图片详情:" + queryDetailPicUrls.toString());
-                } else {
-                    ToastUtil.showText(resultDesc.getReason());
+            public void onSuccess(ResultData<List<TodayHistoryQueryDetail>> resultData) {
+                // 接口返回的详情保存到本地，离线时也可以打开
+                if (resultData.getError_code() == 0) {
+                    EventStore.getInstance().saveDetail(eId, resultData.getResult());
+                }
+                listener.onSuccess(resultData);
+            }
+
+            @Override
+            public void onFailure(VolleyError volleyError) {
+                listener.onFailure(volleyError);
+            }
+        });
+    }
+
+    /**
+     * @Description 按图片列表中ImageView的尺寸预加载事件详情的第一张图片
+     * 尺寸与SizedImageLoader按布局参数计算的一致：宽度match_parent按屏幕宽度，高度为detail_pic_height
+     *
+     * @return 已在内存缓存中或没有图片时返回null
+     */
+    public static SizedImageLoader.ImageContainer prefetchFirstPicture(Context context, List<TodayHistoryQueryDetail> details) {
+        if (details == null || details.isEmpty()) {
+            return null;
+        }
+        List<QueryDetailPicUrl> picUrls = details.get(0).getPicUrl();
+        if (picUrls == null || picUrls.isEmpty() || picUrls.get(0).getUrl() == null) {
+            return null;
+        }
+        int width = context.getResources().getDisplayMetrics().widthPixels;
+        int height = context.getResources().getDimensionPixelSize(R.dimen.detail_pic_height);
+        return HttpRequestUtil.getSizedImageLoader().prefetch(picUrls.get(0).getUrl(), width, height, ImageView.ScaleType.CENTER_CROP);
+    }
+
+    /**
+     * @Description 历史上的今天 事件列表详情，先显示本地保存的详情，再用接口返回的数据更新
+     */
+    private void getTodayHistoryQueryDetail() {
+        EventStore.getInstance().loadDetail(e_id, new EventStore.Callback<List<TodayHistoryQueryDetail>>() {
+            @Override
+            public void onLoaded(List<TodayHistoryQueryDetail> details) {
+                if (details == null || showingNetworkResult || isFinishing()) {
+                    return;
+                }
+                showingStoredResult = true;
+                setDetail(details);
+            }
+        });
+        queryDetail(e_id, getRequestTag(), Request.Priority.NORMAL, new ResultListener<List<TodayHistoryQueryDetail>>() {
+            @Override
+            public void onSuccess(ResultData<List<TodayHistoryQueryDetail>> resultData) {
+                super.onSuccess(resultData);
+                if (resultData.getError_code() == 0) {
+                    showingNetworkResult = true;
+                    setDetail(resultData.getResult());
+                } else if (!showingStoredResult) {
+                    setDetail(null);
+                    ToastUtil.showText(resultData.getReason());
                 }
             }
 
             @Override
             public void onFailure(VolleyError volleyError) {
                 super.onFailure(volleyError);
-                ToastUtil.showText(volleyError.getMessage());
+                if (!showingStoredResult) {
+                    ToastUtil.showText(volleyError.getMessage());
+                }
             }
         });
     }
+
+    private void setDetail(List<TodayHistoryQueryDetail> details) {
+        todayHistoryQueryDetail.clear();
+        queryDetailPicUrls.clear();
+        mTvDetailTitle.setText("");
+        mTvDetailContent.setText("");
+        if (details != null) {
+            todayHistoryQueryDetail.addAll(details);
+        }
+
+        if (!todayHistoryQueryDetail.isEmpty()) {
+            TodayHistoryQueryDetail detail = todayHistoryQueryDetail.get(0);
+            mTvDetailTitle.setText(detail.getTitle().trim());
+            mTvDetailContent.setText(detail.getContent().trim());
+            if (detail.getPicUrl() != null) {
+                queryDetailPicUrls.addAll(detail.getPicUrl());
+            }
+        }
+        queryDetailPicAdapter.setData(queryDetailPicUrls);
+
+        Log.e(Constant.LOG_TAG, "历史上的今天 - 事件详情:" + todayHistoryQueryDetail.toString());
+        Log.e(Constant.LOG_TAG, "历史上的今天 - 事件详情 - 图片详情:" + queryDetailPicUrls.toString());
+    }
 }
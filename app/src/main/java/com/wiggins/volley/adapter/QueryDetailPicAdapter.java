@@ -4,6 +4,7 @@ import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.BaseAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
@@ -11,6 +12,7 @@ import android.widget.TextView;
 import com.wiggins.volley.R;
 import com.wiggins.volley.bean.QueryDetailPicUrl;
 import com.wiggins.volley.http.HttpRequestUtil;
+import com.wiggins.volley.http.ListImagePrefetcher;
 import com.wiggins.volley.utils.StringUtil;
 
 import java.util.List;
@@ -20,7 +22,7 @@ import java.util.List;
  * @Author 一花一世界
  */
 
-public class QueryDetailPicAdapter extends BaseAdapter {
+public class QueryDetailPicAdapter extends BaseAdapter implements ListImagePrefetcher.UrlProvider, AbsListView.RecyclerListener {
 
     private List<QueryDetailPicUrl> data;
     private LayoutInflater inflater;
@@ -50,6 +52,11 @@ public class QueryDetailPicAdapter extends BaseAdapter {
         return position;
     }
 
+    @Override
+    public String getImageUrl(int position) {
+        return data.get(position).getUrl();
+    }
+
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
         ViewHolder holder;
@@ -75,6 +82,17 @@ public class QueryDetailPicAdapter extends BaseAdapter {
         return convertView;
     }
 
+    /**
+     * @Description 行被ListView回收时取消其图片加载，需要通过ListView.setRecyclerListener()设置
+     */
+    @Override
+    public void onMovedToScrapHeap(View view) {
+        Object tag = view.getTag();
+        if (tag instanceof ViewHolder) {
+            HttpRequestUtil.cancelImageLoader(((ViewHolder) tag).mIvUrl);
+        }
+    }
+
     private class ViewHolder {
         private ImageView mIvUrl;
         private TextView mTvTitle;
@@ -2,9 +2,23 @@ package com.wiggins.volley.base;
 
 import android.app.Activity;
 import android.os.Bundle;
+import android.widget.ImageView;
+
+import com.wiggins.volley.bean.ResultData;
+import com.wiggins.volley.bean.ResultDesc;
+import com.wiggins.volley.http.CachePolicy;
+import com.wiggins.volley.http.HttpCall;
+import com.wiggins.volley.http.HttpRequestUtil;
+import com.wiggins.volley.listener.HttpListener;
+import com.wiggins.volley.listener.ResultListener;
+
+import java.lang.reflect.Type;
+import java.util.Map;
 
 /**
  * @Description 所有Activity的基类
+ * 页面通过下面的请求方法发起的请求总是以getRequestTag()为标签，页面销毁时自动取消这些请求和页面中ImageView绑定的图片加载；
+ * 直接调用HttpRequestUtil时需要传入getRequestTag()
  * @Author 一花一世界
  */
 public class BaseActivity extends Activity {
@@ -15,8 +29,81 @@ public class BaseActivity extends Activity {
         BaseApplication.addActivity(this);
     }
 
+    /**
+     * @Description 当前页面发起请求时使用的标签
+     */
+    protected Object getRequestTag() {
+        return this;
+    }
+
+    /**
+     * @Description get 请求，参数说明见HttpRequestUtil.getString()
+     */
+    protected HttpCall<ResultDesc> getString(String url, Map<String, String> params, CachePolicy cachePolicy, HttpListener listener) {
+        return HttpRequestUtil.getString(url, params, cachePolicy, getRequestTag(), listener);
+    }
+
+    /**
+     * @Description post 请求，参数说明见HttpRequestUtil.postString()
+     */
+    protected HttpCall<ResultDesc> postString(String url, Map<String, String> params, CachePolicy cachePolicy, HttpListener listener) {
+        return HttpRequestUtil.postString(url, params, cachePolicy, getRequestTag(), listener);
+    }
+
+    /**
+     * @Description get 请求，返回数据在网络线程中解析，参数说明见HttpRequestUtil.getResult()
+     */
+    protected <T> HttpCall<ResultData<T>> getResult(String url, Map<String, String> params, Type type, CachePolicy cachePolicy, ResultListener<T> listener) {
+        return HttpRequestUtil.getResult(url, params, type, cachePolicy, getRequestTag(), listener);
+    }
+
+    /**
+     * @Description post 请求，返回数据在网络线程中解析，参数说明见HttpRequestUtil.postResult()
+     */
+    protected <T> HttpCall<ResultData<T>> postResult(String url, Map<String, String> params, Type type, CachePolicy cachePolicy, ResultListener<T> listener) {
+        return HttpRequestUtil.postResult(url, params, type, cachePolicy, getRequestTag(), listener);
+    }
+
+    /**
+     * @Description 通过ImageRequest显示网络图片，参数说明见HttpRequestUtil.setImageRequest()
+     */
+    protected void setImageRequest(String url, ImageView imageView) {
+        HttpRequestUtil.setImageRequest(url, imageView, getRequestTag());
+    }
+
+    /**
+     * @Description JsonObjectRequest 请求，参数说明见HttpRequestUtil.requestJsonObject()
+     */
+    protected void requestJsonObject(int method, String url, Map<String, String> params) {
+        HttpRequestUtil.requestJsonObject(method, url, params, getRequestTag());
+    }
+
+    /**
+     * @Description JsonArrayRequest 请求，参数说明见HttpRequestUtil.requestJsonArray()
+     */
+    protected void requestJsonArray(String url) {
+        HttpRequestUtil.requestJsonArray(url, getRequestTag());
+    }
+
+    /**
+     * @Description 自定义GsonRequest<T> 请求，参数说明见HttpRequestUtil.requestGson()
+     */
+    protected <T> void requestGson(int method, String url, Type type, Map<String, String> params) {
+        HttpRequestUtil.<T>requestGson(method, url, type, params, getRequestTag());
+    }
+
+    /**
+     * @Description 自定义XmlRequest<T> 请求，参数说明见HttpRequestUtil.requestXml()
+     */
+    protected void requestXml(int method, String url, Map<String, String> params) {
+        HttpRequestUtil.requestXml(method, url, params, getRequestTag());
+    }
+
     @Override
     protected void onDestroy() {
+        // 页面销毁后不再需要的请求不再占用网络调度线程，结果也不会回调到已销毁的页面
+        HttpRequestUtil.cancelAll(getRequestTag());
+        HttpRequestUtil.cancelImageLoaders(getWindow().getDecorView());
         super.onDestroy();
         BaseApplication.finishActivity(this);
     }
@@ -2,8 +2,11 @@ package com.wiggins.volley.base;
 
 import android.app.Activity;
 import android.app.Application;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 
+import com.wiggins.volley.http.HttpRequestUtil;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -18,6 +21,21 @@ public class BaseApplication extends Application {
         mContext = getApplicationContext();
     }
 
+    /**
+     * @Description 系统内存紧张时按级别释放图片缓存
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        HttpRequestUtil.trimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        HttpRequestUtil.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
     public static Context getContext() {
         return mContext;
     }
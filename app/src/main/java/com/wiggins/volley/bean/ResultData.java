@@ -0,0 +1,46 @@
+package com.wiggins.volley.bean;
+
+/**
+ * @Description 接口返回数据封装，result已解析为具体类型
+ * @Author 一花一世界
+ */
+
+public class ResultData<T> {
+
+    private int error_code;//返回码
+    private String reason;//返回说明
+    private T result;//返回数据
+
+    public int getError_code() {
+        return error_code;
+    }
+
+    public void setError_code(int error_code) {
+        this.error_code = error_code;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    public T getResult() {
+        return result;
+    }
+
+    public void setResult(T result) {
+        this.result = result;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultData{" +
+                "error_code=" + error_code +
+                ", reason='" + reason + '\'' +
+                ", result=" + result +
+                '}';
+    }
+}
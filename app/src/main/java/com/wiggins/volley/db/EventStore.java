@@ -0,0 +1,286 @@
+package com.wiggins.volley.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.wiggins.volley.base.BaseApplication;
+import com.wiggins.volley.bean.TodayHistoryQuery;
+import com.wiggins.volley.bean.TodayHistoryQueryDetail;
+import com.wiggins.volley.utils.Constant;
+import com.wiggins.volley.utils.LogUtil;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * @Description 事件列表和事件详情的本地存储，进程内唯一
+ * 事件列表按查询日期保存，事件详情按事件id保存；页面先读取本地数据显示，再用接口返回的数据更新本地数据，
+ * 查询过的日期和打开过的详情在离线时也可以显示。与Volley的磁盘缓存不同，这里的数据不会因缓存大小或过期时间被淘汰。
+ * 数据库读写在单独的后台线程中执行，回调在主线程中调用
+ * @Author 一花一世界
+ */
+public class EventStore extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "events.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_QUERY_DATE = "query_date";//查询过的日期，没有事件的日期也会保存
+    private static final String TABLE_EVENT = "event";//事件列表
+    private static final String TABLE_EVENT_DETAIL = "event_detail";//事件详情
+
+    private static final String COLUMN_QUERY_DATE = "query_date";//查询日期，即接口的date参数
+    private static final String COLUMN_POSITION = "position";//事件在列表中的位置
+    private static final String COLUMN_E_ID = "e_id";//事件id
+    private static final String COLUMN_DAY = "day";//日期
+    private static final String COLUMN_DATE = "date";//事件日期
+    private static final String COLUMN_TITLE = "title";//事件标题
+    private static final String COLUMN_DETAIL = "detail";//接口返回的事件详情json
+    private static final String COLUMN_UPDATED_AT = "updated_at";//更新时间
+
+    private static final Type DETAIL_TYPE = new TypeToken<List<TodayHistoryQueryDetail>>() {
+    }.getType();
+
+    private static volatile EventStore instance;//进程内唯一实例
+
+    private final Gson mGson = new Gson();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor;//读写数据库的后台线程
+
+    /**
+     * @Description 本地数据读取回调，在主线程中调用
+     */
+    public interface Callback<T> {
+        /**
+         * @param data 本地数据，没有保存过时为null
+         */
+        void onLoaded(T data);
+    }
+
+    /**
+     * @Description 获取进程内唯一的EventStore，如果为空则创建它
+     */
+    public static EventStore getInstance() {
+        if (instance == null) {
+            synchronized (EventStore.class) {
+                if (instance == null) {
+                    instance = new EventStore(BaseApplication.getContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private EventStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "EventStore");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_QUERY_DATE + " ("
+                + COLUMN_QUERY_DATE + " TEXT PRIMARY KEY, "
+                + COLUMN_UPDATED_AT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE " + TABLE_EVENT + " ("
+                + COLUMN_QUERY_DATE + " TEXT NOT NULL, "
+                + COLUMN_POSITION + " INTEGER NOT NULL, "
+                + COLUMN_E_ID + " INTEGER NOT NULL, "
+                + COLUMN_DAY + " TEXT, "
+                + COLUMN_DATE + " TEXT, "
+                + COLUMN_TITLE + " TEXT, "
+                + "PRIMARY KEY (" + COLUMN_QUERY_DATE + ", " + COLUMN_POSITION + "))");
+        db.execSQL("CREATE INDEX " + TABLE_EVENT + "_" + COLUMN_E_ID + " ON " + TABLE_EVENT + " (" + COLUMN_E_ID + ")");
+        db.execSQL("CREATE TABLE " + TABLE_EVENT_DETAIL + " ("
+                + COLUMN_E_ID + " TEXT PRIMARY KEY, "
+                + COLUMN_DETAIL + " TEXT NOT NULL, "
+                + COLUMN_UPDATED_AT + " INTEGER NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // 本地数据都可以从接口重新获取，升级时直接重建
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_QUERY_DATE);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_EVENT);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_EVENT_DETAIL);
+        onCreate(db);
+    }
+
+    /**
+     * @Description 读取指定日期的事件列表
+     *
+     * @param queryDate 查询日期，即接口的date参数
+     * @param callback  没有查询过该日期时返回null，查询过但没有事件时返回空列表
+     */
+    public void loadEvents(final String queryDate, final Callback<List<TodayHistoryQuery>> callback) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deliver(callback, getEvents(queryDate));
+            }
+        });
+    }
+
+    /**
+     * @Description 保存指定日期的事件列表，替换之前保存的列表
+     */
+    public void saveEvents(final String queryDate, List<TodayHistoryQuery> events) {
+        final List<TodayHistoryQuery> copy = events == null ? new ArrayList<TodayHistoryQuery>() : new ArrayList<>(events);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                putEvents(queryDate, copy);
+            }
+        });
+    }
+
+    /**
+     * @Description 读取事件详情
+     *
+     * @param eId      事件id
+     * @param callback 没有保存过该事件的详情时返回null
+     */
+    public void loadDetail(final String eId, final Callback<List<TodayHistoryQueryDetail>> callback) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deliver(callback, getDetail(eId));
+            }
+        });
+    }
+
+    /**
+     * @Description 保存事件详情，替换之前保存的详情
+     */
+    public void saveDetail(final String eId, List<TodayHistoryQueryDetail> detail) {
+        final List<TodayHistoryQueryDetail> copy = detail == null ? new ArrayList<TodayHistoryQueryDetail>() : new ArrayList<>(detail);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                putDetail(eId, copy);
+            }
+        });
+    }
+
+    private List<TodayHistoryQuery> getEvents(String queryDate) {
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = getReadableDatabase();
+            if (DatabaseUtils.queryNumEntries(db, TABLE_QUERY_DATE, COLUMN_QUERY_DATE + " = ?", new String[]{queryDate}) == 0) {
+                return null;
+            }
+            cursor = db.query(TABLE_EVENT, new String[]{COLUMN_E_ID, COLUMN_DAY, COLUMN_DATE, COLUMN_TITLE},
+                    COLUMN_QUERY_DATE + " = ?", new String[]{queryDate}, null, null, COLUMN_POSITION);
+            List<TodayHistoryQuery> events = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                TodayHistoryQuery event = new TodayHistoryQuery();
+                event.setE_id(cursor.getInt(0));
+                event.setDay(cursor.getString(1));
+                event.setDate(cursor.getString(2));
+                event.setTitle(cursor.getString(3));
+                events.add(event);
+            }
+            return events;
+        } catch (SQLiteException e) {
+            LogUtil.e(Constant.LOG_TAG, "EventStore read events " + queryDate + " failed: " + e);
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private void putEvents(String queryDate, List<TodayHistoryQuery> events) {
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                db.delete(TABLE_EVENT, COLUMN_QUERY_DATE + " = ?", new String[]{queryDate});
+                ContentValues values = new ContentValues();
+                for (int i = 0; i < events.size(); i++) {
+                    TodayHistoryQuery event = events.get(i);
+                    values.clear();
+                    values.put(COLUMN_QUERY_DATE, queryDate);
+                    values.put(COLUMN_POSITION, i);
+                    values.put(COLUMN_E_ID, event.getE_id());
+                    values.put(COLUMN_DAY, event.getDay());
+                    values.put(COLUMN_DATE, event.getDate());
+                    values.put(COLUMN_TITLE, event.getTitle());
+                    db.insert(TABLE_EVENT, null, values);
+                }
+                values.clear();
+                values.put(COLUMN_QUERY_DATE, queryDate);
+                values.put(COLUMN_UPDATED_AT, System.currentTimeMillis());
+                db.replace(TABLE_QUERY_DATE, null, values);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLiteException e) {
+            LogUtil.e(Constant.LOG_TAG, "EventStore write events " + queryDate + " failed: " + e);
+        }
+    }
+
+    private List<TodayHistoryQueryDetail> getDetail(String eId) {
+        Cursor cursor = null;
+        try {
+            cursor = getReadableDatabase().query(TABLE_EVENT_DETAIL, new String[]{COLUMN_DETAIL}, COLUMN_E_ID + " = ?",
+                    new String[]{eId}, null, null, null);
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return mGson.fromJson(cursor.getString(0), DETAIL_TYPE);
+        } catch (SQLiteException e) {
+            LogUtil.e(Constant.LOG_TAG, "EventStore read detail " + eId + " failed: " + e);
+            return null;
+        } catch (JsonParseException e) {
+            LogUtil.e(Constant.LOG_TAG, "EventStore parse detail " + eId + " failed: " + e);
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private void putDetail(String eId, List<TodayHistoryQueryDetail> detail) {
+        try {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_E_ID, eId);
+            values.put(COLUMN_DETAIL, mGson.toJson(detail, DETAIL_TYPE));
+            values.put(COLUMN_UPDATED_AT, System.currentTimeMillis());
+            getWritableDatabase().replace(TABLE_EVENT_DETAIL, null, values);
+        } catch (SQLiteException e) {
+            LogUtil.e(Constant.LOG_TAG, "EventStore write detail " + eId + " failed: " + e);
+        }
+    }
+
+    private <T> void deliver(final Callback<T> callback, final T data) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onLoaded(data);
+            }
+        });
+    }
+}
@@ -0,0 +1,144 @@
+package com.wiggins.volley.http;
+
+import android.os.SystemClock;
+
+import com.android.volley.RetryPolicy;
+import com.android.volley.TimeoutError;
+import com.android.volley.VolleyError;
+
+import java.util.Random;
+
+/**
+ * @Description 根据接口耗时自适应的重试策略
+ * 超时时间由LatencyTracker按接口的耗时分布计算，超时后加倍；重试前按指数退避并加入随机抖动等待，
+ * 等待在网络调度线程中进行，单次等待不超过BACKOFF_MAX_MS；
+ * 总时限从第一次网络请求开始计算，不包括在队列中排队的时间，所有尝试（包括等待时间）不超过总时限
+ * @Author 一花一世界
+ */
+public class AdaptiveRetryPolicy implements RetryPolicy {
+
+    public static final int DEFAULT_TIMEOUT_MS = 10 * 1000;//没有统计数据时的超时时间
+    public static final int MIN_TIMEOUT_MS = 2500;//最小超时时间
+    public static final int MAX_TIMEOUT_MS = 15 * 1000;//最大超时时间
+    public static final int DEFAULT_MAX_RETRIES = 2;//默认最大重试次数
+    public static final int DEFAULT_DEADLINE_MS = 30 * 1000;//默认总时限
+    private static final int BACKOFF_BASE_MS = 100;//退避等待的基数
+    private static final int BACKOFF_MAX_MS = 500;//单次退避等待的上限，等待期间调度线程不能处理其他请求
+
+    private static final Random RANDOM = new Random();
+
+    private final LatencyTracker mTracker;
+    private final String mEndpoint;//接口标识
+    private final int mMaxRetries;//最大重试次数
+    private final long mDeadlineMs;//总时限
+    private long mDeadline;//总时限的截止时间点，第一次网络请求开始时设置
+    private int mCurrentRetryCount;//当前重试次数
+    private long mAttemptStart;//当前尝试的开始时间
+    private boolean mTimeoutClamped;//当前尝试的超时时间是否被剩余的总时限截短
+
+    public AdaptiveRetryPolicy(String url) {
+        this(LatencyTracker.getInstance(), url, DEFAULT_MAX_RETRIES, DEFAULT_DEADLINE_MS);
+    }
+
+    /**
+     * @Description 按主机统计耗时的重试策略，用于图片等每个地址都不同的请求，同一主机的图片共用一个超时时间
+     */
+    public static AdaptiveRetryPolicy forHost(String url) {
+        return new AdaptiveRetryPolicy(LatencyTracker.getInstance(), LatencyTracker.hostOf(url),
+                DEFAULT_MAX_RETRIES, DEFAULT_DEADLINE_MS);
+    }
+
+    /**
+     * @param tracker    接口耗时统计
+     * @param url        请求地址
+     * @param maxRetries 最大重试次数
+     * @param deadlineMs 总时限，从第一次网络请求开始计算，低优先级请求排队的时间不会占用总时限
+     */
+    public AdaptiveRetryPolicy(LatencyTracker tracker, String url, int maxRetries, int deadlineMs) {
+        mTracker = tracker;
+        mEndpoint = LatencyTracker.endpointOf(url);
+        mMaxRetries = maxRetries;
+        mDeadlineMs = deadlineMs;
+    }
+
+    public String getEndpoint() {
+        return mEndpoint;
+    }
+
+    /**
+     * @Description 剩余的总时限
+     */
+    public long getRemainingMs() {
+        if (mDeadline == 0) {
+            return mDeadlineMs;
+        }
+        return mDeadline - SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public int getCurrentTimeout() {
+        int timeout = mTracker.getTimeoutMs(mEndpoint, DEFAULT_TIMEOUT_MS, MIN_TIMEOUT_MS, MAX_TIMEOUT_MS);
+        // 不超过剩余的总时限
+        long remaining = getRemainingMs();
+        if (remaining < timeout) {
+            mTimeoutClamped = true;
+            return (int) Math.max(1, remaining);
+        }
+        return timeout;
+    }
+
+    @Override
+    public int getCurrentRetryCount() {
+        return mCurrentRetryCount;
+    }
+
+    @Override
+    public void retry(VolleyError error) throws VolleyError {
+        if (error instanceof TimeoutError && !mTimeoutClamped) {
+            // 被总时限截短的超时不说明接口变慢，不计入统计
+            mTracker.recordTimeout(mEndpoint);
+        }
+        mCurrentRetryCount++;
+        if (mCurrentRetryCount > mMaxRetries) {
+            throw error;
+        }
+        long backoff = getBackoffMs(mCurrentRetryCount);
+        // 等待后剩余的时间不足最小超时时间时不再重试
+        if (getRemainingMs() - backoff < MIN_TIMEOUT_MS) {
+            throw error;
+        }
+        if (backoff > 0) {
+            // 重试在网络调度线程中同步执行，只能在这里等待
+            SystemClock.sleep(backoff);
+        }
+        onAttemptStart();
+    }
+
+    /**
+     * @Description 指数退避加随机抖动：在[0, min(上限, 基数*2^重试次数))之间随机取值
+     */
+    private static long getBackoffMs(int retryCount) {
+        long ceiling = Math.min(BACKOFF_MAX_MS, (long) BACKOFF_BASE_MS << Math.min(retryCount, 16));
+        return (long) (RANDOM.nextDouble() * ceiling);
+    }
+
+    /**
+     * @Description 开始一次网络请求，由DispatcherNetwork调用
+     */
+    void onAttemptStart() {
+        mAttemptStart = SystemClock.elapsedRealtime();
+        mTimeoutClamped = false;
+        if (mDeadline == 0) {
+            mDeadline = mAttemptStart + mDeadlineMs;
+        }
+    }
+
+    /**
+     * @Description 网络请求成功，记录本次尝试的耗时，由DispatcherNetwork调用
+     */
+    void onSuccess() {
+        if (mAttemptStart > 0) {
+            mTracker.record(mEndpoint, SystemClock.elapsedRealtime() - mAttemptStart);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Cache;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.Response.ErrorListener;
+import com.android.volley.Response.Listener;
+import com.android.volley.VolleyError;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * @Description 接口请求的基类，提供请求参数、缓存策略以及网络失败时回退到缓存数据的处理
+ * @Author 一花一世界
+ */
+public abstract class BaseRequest<T> extends Request<T> {
+
+    private final Listener<T> mListener;
+    private Map<String, String> mParams;//请求参数
+    private CachePolicy mCachePolicy = CachePolicy.DEFAULT;//缓存策略
+    private Priority mPriority = Priority.NORMAL;//请求优先级
+    private T mFallbackResult;//网络失败时在网络线程中解析好的缓存数据
+    private RequestKey mRequestKey;//请求的规范化标识
+    private SingleFlight.Flight<T> mFlight;//合并的相同请求，为空时表示未参与合并
+    private volatile boolean mUnsubscribed;//是否已取消订阅
+
+    public BaseRequest(int method, String url, Listener<T> listener, ErrorListener errorListener) {
+        super(method, url, errorListener);
+        mListener = listener;
+    }
+
+    /**
+     * @Description 解析返回数据，在网络线程中执行
+     */
+    protected abstract Response<T> parseResponse(NetworkResponse response);
+
+    /**
+     * @Description 解析成功的数据是否写入缓存，例如接口返回错误码时不应缓存
+     */
+    protected boolean shouldCacheResult(T result) {
+        return true;
+    }
+
+    /**
+     * @Description 返回数据的类型，用于区分地址相同但解析类型不同的请求，默认为空
+     */
+    protected Type getResponseType() {
+        return null;
+    }
+
+    public synchronized void setParams(Map<String, String> params) {
+        mParams = params;
+        mRequestKey = null;
+    }
+
+    @Override
+    protected Map<String, String> getParams() throws AuthFailureError {
+        return mParams;
+    }
+
+    public void setCachePolicy(CachePolicy cachePolicy) {
+        mCachePolicy = cachePolicy == null ? CachePolicy.DEFAULT : cachePolicy;
+    }
+
+    public CachePolicy getCachePolicy() {
+        return mCachePolicy;
+    }
+
+    /**
+     * @Description 设置请求优先级，需要在加入队列前调用，示例：预加载使用Priority.LOW
+     */
+    public void setPriority(Priority priority) {
+        mPriority = priority == null ? Priority.NORMAL : priority;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * @Description 请求的规范化标识，参数排序并编码，在设置参数后首次使用时生成
+     */
+    public synchronized RequestKey getRequestKey() {
+        if (mRequestKey == null) {
+            mRequestKey = new RequestKey.Builder(getUrl())
+                    .method(getMethod())
+                    .params(mParams)
+                    .encoding(getParamsEncoding())
+                    .build();
+        }
+        return mRequestKey;
+    }
+
+    /**
+     * @Description 缓存key，POST请求的参数在请求体中，需要加入key中区分不同参数
+     */
+    @Override
+    public String getCacheKey() {
+        return getRequestKey().getCacheKey();
+    }
+
+    /**
+     * @Description 请求体使用排序后的参数，与缓存key保持一致
+     */
+    @Override
+    public byte[] getBody() throws AuthFailureError {
+        String body = getRequestKey().getBody();
+        if (body == null) {
+            return null;
+        }
+        try {
+            return body.getBytes(getParamsEncoding());
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("Encoding not supported: " + getParamsEncoding(), e);
+        }
+    }
+
+    @Override
+    protected Response<T> parseNetworkResponse(NetworkResponse response) {
+        Response<T> parsed = parseResponse(response);
+        if (!parsed.isSuccess()) {
+            return parsed;
+        }
+        Cache.Entry entry = shouldCacheResult(parsed.result) ? mCachePolicy.createEntry(response) : null;
+        return Response.success(parsed.result, entry);
+    }
+
+    /**
+     * @Description 网络失败时如果缓存策略允许且有缓存数据，在网络线程中提前解析好缓存数据；
+     * 主机被熔断时无论缓存策略如何都使用已有的缓存数据
+     */
+    @Override
+    protected VolleyError parseNetworkError(VolleyError volleyError) {
+        Cache.Entry entry = getCacheEntry();
+        if (fallsBackToCache(volleyError) && entry != null && !hasHadResponseDelivered()) {
+            Response<T> cached = parseResponse(new NetworkResponse(entry.data, entry.responseHeaders));
+            if (cached.isSuccess()) {
+                mFallbackResult = cached.result;
+                addMarker("cache-fallback");
+            }
+        }
+        return volleyError;
+    }
+
+    synchronized void setFlight(SingleFlight.Flight<T> flight) {
+        mFlight = flight;
+    }
+
+    private synchronized SingleFlight.Flight<T> getFlight() {
+        return mFlight;
+    }
+
+    /**
+     * @Description 标记为已取消订阅，返回是否是首次标记
+     */
+    synchronized boolean markUnsubscribed() {
+        if (mUnsubscribed) {
+            return false;
+        }
+        mUnsubscribed = true;
+        return true;
+    }
+
+    /**
+     * @Description 取消当前订阅，合并的请求在所有订阅者都取消后才取消网络请求
+     */
+    public void unsubscribe() {
+        SingleFlight.Flight<T> flight = getFlight();
+        if (flight == null) {
+            cancel();
+        } else {
+            flight.unsubscribe(this);
+        }
+    }
+
+    /**
+     * @Description 按标签取消时使用：合并的请求只取消该标签的订阅者，返回是否需要直接取消当前请求
+     */
+    boolean cancelByTag(Object tag) {
+        SingleFlight.Flight<T> flight = getFlight();
+        if (flight == null) {
+            return getTag() == tag;
+        }
+        flight.cancelAll(tag);
+        return false;
+    }
+
+    private boolean fallsBackToCache(VolleyError error) {
+        return mCachePolicy.fallsBackToCache() || error instanceof CircuitOpenError;
+    }
+
+    @Override
+    protected void deliverResponse(T response) {
+        notifyResponse(response);
+        SingleFlight.Flight<T> flight = getFlight();
+        if (flight != null) {
+            flight.deliverResponse(this, response);
+        }
+    }
+
+    @Override
+    public void deliverError(VolleyError error) {
+        if (mFallbackResult != null) {
+            // 网络失败，使用缓存数据
+            deliverResponse(mFallbackResult);
+        } else if (fallsBackToCache(error) && hasHadResponseDelivered()) {
+            // 已经返回过缓存数据，后台刷新失败不再通知
+            addMarker("refresh-failed");
+        } else {
+            notifyError(error);
+            SingleFlight.Flight<T> flight = getFlight();
+            if (flight != null) {
+                flight.deliverError(this, error);
+            }
+        }
+    }
+
+    void notifyResponse(T response) {
+        if (!mUnsubscribed) {
+            mListener.onResponse(response);
+        }
+    }
+
+    void notifyError(VolleyError error) {
+        if (!mUnsubscribed) {
+            super.deliverError(error);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.Cache;
+import com.android.volley.NetworkResponse;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+/**
+ * @Description 单个请求的缓存策略，聚合数据的接口不返回有效的缓存头，由客户端指定缓存的软过期和硬过期时间
+ * 软过期之前直接使用缓存；软过期之后、硬过期之前先返回缓存再在后台刷新；硬过期之后请求网络
+ * 除DEFAULT外，网络请求失败时都会回退到已有的缓存数据（即使已过期）
+ * @Author 一花一世界
+ */
+public class CachePolicy {
+
+    public enum Mode {
+        DEFAULT,//按照服务器返回的缓存头处理，即Volley默认行为
+        CACHE_FIRST,//缓存未过期时只使用缓存，过期后请求网络
+        NETWORK_FIRST,//总是请求网络，网络失败时使用缓存
+        STALE_WHILE_REVALIDATE,//先返回缓存，同时在后台请求网络刷新
+        OFFLINE_ONLY//只使用缓存，不请求网络
+    }
+
+    public static final CachePolicy DEFAULT = new CachePolicy(Mode.DEFAULT, 0, 0);
+
+    private final Mode mMode;
+    private final long mSoftTtlMs;//软过期时间
+    private final long mTtlMs;//硬过期时间
+
+    private CachePolicy(Mode mode, long softTtlMs, long ttlMs) {
+        mMode = mode;
+        mSoftTtlMs = softTtlMs;
+        mTtlMs = ttlMs;
+    }
+
+    /**
+     * @Description 缓存优先：ttlMs内只使用缓存
+     */
+    public static CachePolicy cacheFirst(long ttlMs) {
+        return new CachePolicy(Mode.CACHE_FIRST, ttlMs, ttlMs);
+    }
+
+    /**
+     * @Description 网络优先：总是请求网络，失败时使用缓存
+     */
+    public static CachePolicy networkFirst() {
+        return new CachePolicy(Mode.NETWORK_FIRST, 0, 0);
+    }
+
+    /**
+     * @Description 先返回缓存再刷新：softTtlMs内只使用缓存，softTtlMs到ttlMs之间先返回缓存同时后台刷新，超过ttlMs请求网络
+     */
+    public static CachePolicy staleWhileRevalidate(long softTtlMs, long ttlMs) {
+        if (softTtlMs > ttlMs) {
+            throw new IllegalArgumentException("softTtlMs must be <= ttlMs");
+        }
+        return new CachePolicy(Mode.STALE_WHILE_REVALIDATE, softTtlMs, ttlMs);
+    }
+
+    /**
+     * @Description 离线：只使用缓存，没有缓存时返回失败
+     */
+    public static CachePolicy offlineOnly() {
+        return new CachePolicy(Mode.OFFLINE_ONLY, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public Mode getMode() {
+        return mMode;
+    }
+
+    public long getSoftTtlMs() {
+        return mSoftTtlMs;
+    }
+
+    public long getTtlMs() {
+        return mTtlMs;
+    }
+
+    /**
+     * @Description 是否允许请求网络
+     */
+    public boolean allowsNetwork() {
+        return mMode != Mode.OFFLINE_ONLY;
+    }
+
+    /**
+     * @Description 网络请求失败时是否回退到缓存数据
+     */
+    public boolean fallsBackToCache() {
+        return mMode != Mode.DEFAULT;
+    }
+
+    /**
+     * @Description 根据缓存策略生成缓存对象，DEFAULT时按照缓存头处理，其他情况使用客户端指定的过期时间
+     */
+    public Cache.Entry createEntry(NetworkResponse response) {
+        Cache.Entry entry = HttpHeaderParser.parseCacheHeaders(response);
+        if (mMode == Mode.DEFAULT) {
+            return entry;
+        }
+        if (entry == null) {
+            // 服务器要求不缓存时，按客户端策略仍然缓存
+            entry = new Cache.Entry();
+            entry.data = response.data;
+            entry.responseHeaders = response.headers;
+        }
+        long now = System.currentTimeMillis();
+        entry.softTtl = expireAt(now, mSoftTtlMs);
+        entry.ttl = expireAt(now, mTtlMs);
+        return entry;
+    }
+
+    private static long expireAt(long now, long ttlMs) {
+        if (ttlMs <= 0) {
+            // 立即过期，缓存只作为网络失败时的备用数据
+            return 0;
+        }
+        return ttlMs > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + ttlMs;
+    }
+
+    @Override
+    public String toString() {
+        return "CachePolicy{" +
+                "mode=" + mMode +
+                ", softTtlMs=" + mSoftTtlMs +
+                ", ttlMs=" + mTtlMs +
+                '}';
+    }
+}
@@ -0,0 +1,236 @@
+package com.wiggins.volley.http;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.NoConnectionError;
+import com.android.volley.ServerError;
+import com.android.volley.TimeoutError;
+import com.android.volley.VolleyError;
+
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @Description 按主机统计失败率的熔断器
+ * 关闭状态下统计最近若干次请求的结果，失败率超过阈值后打开；打开期间请求直接失败，不占用网络调度线程；
+ * 打开一段时间后进入半开状态，只放行一个探测请求，成功则关闭，失败则重新打开并加倍打开时间；
+ * 设备没有网络时的失败不说明主机不可用，不计入失败率，网络恢复时重置所有主机的状态
+ * @Author 一花一世界
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,//正常放行
+        OPEN,//直接失败
+        HALF_OPEN//只放行一个探测请求
+    }
+
+    public static final int DEFAULT_WINDOW_SIZE = 20;//统计最近的请求数量
+    public static final int DEFAULT_MIN_REQUESTS = 5;//计算失败率需要的最少请求数量
+    public static final int DEFAULT_FAILURE_PERCENT = 50;//打开熔断的失败率
+    public static final long DEFAULT_OPEN_MS = 10 * 1000;//首次打开的时间
+    private static final long MAX_OPEN_MS = 2 * 60 * 1000;//最长打开时间
+
+    private final int mWindowSize;
+    private final int mMinRequests;
+    private final int mFailurePercent;
+    private final long mOpenMs;
+    private final Map<String, HostState> mHosts = new HashMap<>();
+    private volatile boolean mNetworkAvailable = true;//设备是否有网络连接
+
+    public CircuitBreaker() {
+        this(DEFAULT_WINDOW_SIZE, DEFAULT_MIN_REQUESTS, DEFAULT_FAILURE_PERCENT, DEFAULT_OPEN_MS);
+    }
+
+    public CircuitBreaker(int windowSize, int minRequests, int failurePercent, long openMs) {
+        if (windowSize <= 0 || minRequests <= 0 || minRequests > windowSize) {
+            throw new IllegalArgumentException("minRequests must be in [1, windowSize]");
+        }
+        mWindowSize = windowSize;
+        mMinRequests = minRequests;
+        mFailurePercent = failurePercent;
+        mOpenMs = openMs;
+    }
+
+    /**
+     * @Description 请求地址对应的主机
+     */
+    public static String hostOf(String url) {
+        String host = Uri.parse(url).getHost();
+        return host == null ? "" : host;
+    }
+
+    /**
+     * @Description 是否允许向该主机发送请求，半开状态下只允许一个探测请求
+     */
+    public boolean allowRequest(String host) {
+        return getHostState(host).allowRequest();
+    }
+
+    /**
+     * @Description 设备网络状态变化时调用，从无网络恢复时重置所有主机的熔断状态，不必等待打开时间结束
+     */
+    public void setNetworkAvailable(boolean available) {
+        boolean recovered = available && !mNetworkAvailable;
+        mNetworkAvailable = available;
+        if (recovered) {
+            reset();
+        }
+    }
+
+    /**
+     * @Description 重置所有主机的熔断状态
+     */
+    public synchronized void reset() {
+        mHosts.clear();
+    }
+
+    /**
+     * @Description 记录请求结果：超时、无法连接和5xx计为失败，其他错误说明主机可用，计为成功；
+     * 设备没有网络或域名无法解析时不计入
+     */
+    public void onResult(String host, VolleyError error) {
+        HostState state = getHostState(host);
+        if (error != null && isOfflineFailure(error)) {
+            state.onAbort();
+        } else if (error == null || !isHostFailure(error)) {
+            state.onSuccess();
+        } else {
+            state.onFailure();
+        }
+    }
+
+    /**
+     * @Description 请求未得到结果（例如请求地址错误），释放半开状态下的探测名额
+     */
+    public void onAbort(String host) {
+        getHostState(host).onAbort();
+    }
+
+    public State getState(String host) {
+        return getHostState(host).getState();
+    }
+
+    private synchronized HostState getHostState(String host) {
+        HostState state = mHosts.get(host);
+        if (state == null) {
+            state = new HostState();
+            mHosts.put(host, state);
+        }
+        return state;
+    }
+
+    private boolean isOfflineFailure(VolleyError error) {
+        return !mNetworkAvailable || (error instanceof NoConnectionError && error.getCause() instanceof UnknownHostException);
+    }
+
+    private static boolean isHostFailure(VolleyError error) {
+        if (error instanceof TimeoutError || error instanceof NoConnectionError) {
+            return true;
+        }
+        if (error instanceof ServerError) {
+            NetworkResponse response = error.networkResponse;
+            return response == null || response.statusCode >= 500;
+        }
+        return false;
+    }
+
+    /**
+     * @Description 单个主机的熔断状态
+     */
+    private class HostState {
+
+        private State mState = State.CLOSED;
+        private final boolean[] mResults = new boolean[mWindowSize];//最近的请求结果，true为失败，循环写入
+        private int mCount;//窗口内的请求数量
+        private int mFailures;//窗口内的失败数量
+        private int mIndex;//下一次写入的位置
+        private long mOpenUntil;//打开状态的结束时间
+        private long mCurrentOpenMs = mOpenMs;//当前的打开时间，连续探测失败时加倍
+        private boolean mProbing;//半开状态下探测请求是否正在进行
+
+        synchronized boolean allowRequest() {
+            switch (mState) {
+                case OPEN:
+                    if (SystemClock.elapsedRealtime() < mOpenUntil) {
+                        return false;
+                    }
+                    mState = State.HALF_OPEN;
+                    mProbing = true;
+                    return true;
+                case HALF_OPEN:
+                    if (mProbing) {
+                        return false;
+                    }
+                    mProbing = true;
+                    return true;
+                default:
+                    return true;
+            }
+        }
+
+        synchronized void onSuccess() {
+            if (mState == State.HALF_OPEN) {
+                mState = State.CLOSED;
+                mCurrentOpenMs = mOpenMs;
+                mProbing = false;
+                reset();
+            } else if (mState == State.CLOSED) {
+                add(false);
+            }
+        }
+
+        synchronized void onFailure() {
+            if (mState == State.HALF_OPEN) {
+                mCurrentOpenMs = Math.min(MAX_OPEN_MS, mCurrentOpenMs * 2);
+                open();
+            } else if (mState == State.CLOSED) {
+                add(true);
+                if (mCount >= mMinRequests && mFailures * 100 >= mFailurePercent * mCount) {
+                    open();
+                }
+            }
+        }
+
+        synchronized void onAbort() {
+            if (mState == State.HALF_OPEN) {
+                mProbing = false;
+            }
+        }
+
+        synchronized State getState() {
+            return mState;
+        }
+
+        private void open() {
+            mState = State.OPEN;
+            mProbing = false;
+            mOpenUntil = SystemClock.elapsedRealtime() + mCurrentOpenMs;
+            reset();
+        }
+
+        private void add(boolean failure) {
+            if (mCount == mWindowSize) {
+                if (mResults[mIndex]) {
+                    mFailures--;
+                }
+            } else {
+                mCount++;
+            }
+            mResults[mIndex] = failure;
+            if (failure) {
+                mFailures++;
+            }
+            mIndex = (mIndex + 1) % mWindowSize;
+        }
+
+        private void reset() {
+            mCount = 0;
+            mFailures = 0;
+            mIndex = 0;
+        }
+    }
+}
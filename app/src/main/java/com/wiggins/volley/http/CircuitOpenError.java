@@ -0,0 +1,27 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.NoConnectionError;
+
+/**
+ * @Description 主机的熔断器处于打开状态时直接返回的异常，请求没有发送到网络
+ * @Author 一花一世界
+ */
+public class CircuitOpenError extends NoConnectionError {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String mHost;//被熔断的主机
+
+    public CircuitOpenError(String host) {
+        mHost = host;
+    }
+
+    public String getHost() {
+        return mHost;
+    }
+
+    @Override
+    public String getMessage() {
+        return "Circuit open for host " + mHost;
+    }
+}
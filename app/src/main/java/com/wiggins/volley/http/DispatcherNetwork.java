@@ -0,0 +1,141 @@
+package com.wiggins.volley.http;
+
+import android.os.Process;
+
+import com.android.volley.Cache;
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.VolleyError;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @Description 网络调度线程使用的Network，包装实际的Network并在首次执行时设置调度线程的优先级，
+ * 缓存策略不允许请求网络时直接返回失败，使用AdaptiveRetryPolicy的请求在成功后记录耗时，
+ * 设置了熔断器时按主机记录请求结果，熔断打开期间有缓存时直接使用缓存，没有时返回CircuitOpenError；设置了RequestMetrics时记录网络耗时
+ * @Author 一花一世界
+ */
+public class DispatcherNetwork implements Network {
+
+    private final Network mNetwork;//实际执行请求的Network
+    private final int mThreadPriority;//调度线程优先级
+    private final CircuitBreaker mCircuitBreaker;//熔断器，可为空
+    private final RequestMetrics mMetrics;//耗时统计，可为空
+    private final ThreadLocal<Boolean> mPrioritySet = new ThreadLocal<>();
+
+    public DispatcherNetwork(Network network, int threadPriority) {
+        this(network, threadPriority, null);
+    }
+
+    public DispatcherNetwork(Network network, int threadPriority, CircuitBreaker circuitBreaker) {
+        this(network, threadPriority, circuitBreaker, null);
+    }
+
+    public DispatcherNetwork(Network network, int threadPriority, CircuitBreaker circuitBreaker, RequestMetrics metrics) {
+        mNetwork = network;
+        mThreadPriority = threadPriority;
+        mCircuitBreaker = circuitBreaker;
+        mMetrics = metrics;
+    }
+
+    @Override
+    public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+        if (mPrioritySet.get() == null) {
+            // NetworkDispatcher启动时固定设置为后台优先级，这里按队列配置覆盖一次
+            Process.setThreadPriority(mThreadPriority);
+            mPrioritySet.set(Boolean.TRUE);
+        }
+        if (request instanceof BaseRequest && !((BaseRequest<?>) request).getCachePolicy().allowsNetwork()) {
+            // 只使用缓存的请求走到这里说明没有可用缓存
+            request.addMarker("offline-no-cache");
+            throw new VolleyError("No cached response for offline-only request: " + request.getCacheKey());
+        }
+        if (mCircuitBreaker == null) {
+            return performNetworkRequest(request);
+        }
+        String host = CircuitBreaker.hostOf(request.getUrl());
+        if (!mCircuitBreaker.allowRequest(host)) {
+            request.addMarker("circuit-open");
+            NetworkResponse cached = getCachedResponse(request);
+            if (cached != null) {
+                request.addMarker("circuit-open-cache");
+                if (mMetrics != null && cached.notModified) {
+                    mMetrics.onFinishedWithoutDelivery(request);
+                }
+                return cached;
+            }
+            throw new CircuitOpenError(host);
+        }
+        boolean recorded = false;
+        try {
+            NetworkResponse response = performNetworkRequest(request);
+            mCircuitBreaker.onResult(host, null);
+            recorded = true;
+            return response;
+        } catch (VolleyError e) {
+            mCircuitBreaker.onResult(host, e);
+            recorded = true;
+            throw e;
+        } finally {
+            if (!recorded) {
+                mCircuitBreaker.onAbort(host);
+            }
+        }
+    }
+
+    /**
+     * @Description 熔断打开时使用已过期的缓存数据，用于图片、Json等没有缓存策略的请求；
+     * BaseRequest按缓存策略在parseNetworkError中回退到缓存，这里不处理
+     * 已返回过缓存数据（软过期）时按304处理，请求直接结束；否则去掉缓存头后按普通响应返回，
+     * 重新写入的缓存仍是过期的，熔断恢复后会再次请求网络
+     */
+    private static NetworkResponse getCachedResponse(Request<?> request) {
+        Cache.Entry entry = request.getCacheEntry();
+        if (request instanceof BaseRequest || entry == null || entry.data == null) {
+            return null;
+        }
+        if (request.hasHadResponseDelivered()) {
+            return new NetworkResponse(304, entry.data, entry.responseHeaders, true);
+        }
+        Map<String, String> headers = new HashMap<>();
+        if (entry.responseHeaders != null) {
+            for (Map.Entry<String, String> header : entry.responseHeaders.entrySet()) {
+                String name = header.getKey();
+                if (!"Cache-Control".equalsIgnoreCase(name) && !"Expires".equalsIgnoreCase(name)) {
+                    headers.put(name, header.getValue());
+                }
+            }
+        }
+        return new NetworkResponse(200, entry.data, headers, false);
+    }
+
+    private NetworkResponse performNetworkRequest(Request<?> request) throws VolleyError {
+        AdaptiveRetryPolicy retryPolicy = request.getRetryPolicy() instanceof AdaptiveRetryPolicy
+                ? (AdaptiveRetryPolicy) request.getRetryPolicy() : null;
+        if (retryPolicy != null) {
+            retryPolicy.onAttemptStart();
+        }
+        if (mMetrics != null) {
+            mMetrics.onNetworkStart(request);
+        }
+        NetworkResponse response;
+        try {
+            response = mNetwork.performRequest(request);
+        } finally {
+            if (mMetrics != null) {
+                mMetrics.onNetworkEnd(request);
+            }
+        }
+        if (retryPolicy != null) {
+            // 记录最后一次尝试的耗时，用于计算该接口后续请求的超时时间
+            retryPolicy.onSuccess();
+        }
+        if (mMetrics != null && response.notModified && request.hasHadResponseDelivered()) {
+            // NetworkDispatcher对已分发过缓存数据的304直接结束请求，不再经过分发
+            mMetrics.onFinishedWithoutDelivery(request);
+        }
+        return response;
+    }
+}
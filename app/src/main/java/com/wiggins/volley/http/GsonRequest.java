@@ -8,30 +8,58 @@ import com.android.volley.Response.ErrorListener;
 import com.android.volley.Response.Listener;
 import com.android.volley.toolbox.HttpHeaderParser;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Type;
+import java.util.Map;
 
 /**
  * @Description 自定义GsonRequest<T>用于使用GSON来解析数据
+ * 直接从返回的字节流中用JsonReader流式解析，所有请求共用一个Gson以复用其缓存的TypeAdapter，
+ * 支持Class和泛型Type，例如：new TypeToken<List<TodayHistoryQuery>>(){}.getType()
  * @Author 一花一世界
  */
 public class GsonRequest<T> extends Request<T> {
 
+    private static final Gson GSON = new Gson();//共用的Gson，内部会缓存每个类型的TypeAdapter
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
     private final Listener<T> mListener;
-    private Gson mGson;
-    private Class<T> mClass;
+    private final TypeAdapter<T> mAdapter;
 
-    public GsonRequest(int method, String url, Class<T> clazz, Listener<T> listener, ErrorListener errorListener) {
+    @SuppressWarnings("unchecked")
+    public GsonRequest(int method, String url, Type type, Listener<T> listener, ErrorListener errorListener) {
         super(method, url, errorListener);
-        mGson = new Gson();
-        mClass = clazz;
+        mAdapter = (TypeAdapter<T>) GSON.getAdapter(TypeToken.get(type));
         mListener = listener;
     }
 
+    public GsonRequest(int method, String url, Class<T> clazz, Listener<T> listener, ErrorListener errorListener) {
+        this(method, url, (Type) clazz, listener, errorListener);
+    }
+
     public GsonRequest(String url, Class<T> clazz, Listener<T> listener, ErrorListener errorListener) {
         this(Method.GET, url, clazz, listener, errorListener);
     }
 
+    public GsonRequest(String url, Type type, Listener<T> listener, ErrorListener errorListener) {
+        this(Method.GET, url, type, listener, errorListener);
+    }
+
+    /**
+     * @Description 获取共用的Gson对象
+     */
+    public static Gson getGson() {
+        return GSON;
+    }
+
     @Override
     protected void deliverResponse(T response) {
         mListener.onResponse(response);
@@ -40,11 +68,48 @@ public class GsonRequest<T> extends Request<T> {
     @Override
     protected Response<T> parseNetworkResponse(NetworkResponse response) {
         try {
-            String jsonString = new String(response.data, "UTF-8");
-            return Response.success(mGson.fromJson(jsonString, mClass),
-                    HttpHeaderParser.parseCacheHeaders(response));
+            JsonReader reader = newJsonReader(response);
+            reader.setLenient(true);
+            return Response.success(mAdapter.read(reader), HttpHeaderParser.parseCacheHeaders(response));
         } catch (UnsupportedEncodingException e) {
             return Response.error(new ParseError(e));
+        } catch (IOException e) {
+            return Response.error(new ParseError(e));
+        } catch (JsonParseException e) {
+            return Response.error(new ParseError(e));
+        } catch (IllegalStateException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    /**
+     * @Description 直接在返回的字节数组上创建JsonReader，不再先拷贝成String
+     */
+    static JsonReader newJsonReader(NetworkResponse response) throws UnsupportedEncodingException {
+        return new JsonReader(new InputStreamReader(new ByteArrayInputStream(response.data), parseCharset(response.headers)));
+    }
+
+    /**
+     * @Description 从Content-Type中获取编码，没有指定时默认使用UTF-8
+     */
+    static String parseCharset(Map<String, String> headers) {
+        return parseCharset(headers, DEFAULT_CHARSET);
+    }
+
+    /**
+     * @Description 从Content-Type中获取编码，没有指定时返回defaultCharset
+     */
+    static String parseCharset(Map<String, String> headers, String defaultCharset) {
+        String contentType = headers == null ? null : headers.get("Content-Type");
+        if (contentType != null) {
+            String[] params = contentType.split(";");
+            for (int i = 1; i < params.length; i++) {
+                String[] pair = params[i].trim().split("=");
+                if (pair.length == 2 && pair[0].equalsIgnoreCase("charset")) {
+                    return pair[1].trim();
+                }
+            }
         }
+        return defaultCharset;
     }
 }
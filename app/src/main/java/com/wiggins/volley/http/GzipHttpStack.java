@@ -0,0 +1,312 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Request;
+import com.android.volley.toolbox.HurlStack;
+import com.wiggins.volley.utils.Constant;
+import com.wiggins.volley.utils.LogUtil;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.BasicHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * @Description 支持gzip/deflate压缩的HttpStack
+ * 请求时发送Accept-Encoding，响应被压缩时以流的方式解压，解压后的数据由BasicNetwork直接写入其ByteArrayPool缓冲区，
+ * 并统计每个请求压缩前后的字节数
+ * @Author 一花一世界
+ */
+public class GzipHttpStack extends HurlStack {
+
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+    private static final String ENCODING_GZIP = "gzip";
+    private static final String ENCODING_DEFLATE = "deflate";
+    private static final int INFLATE_BUFFER_SIZE = 4096;
+    // Volley按名称区分大小写读取的响应头，服务器返回其他大小写形式时统一为这里的写法
+    private static final String[] CANONICAL_HEADERS = {"Cache-Control", "Content-Encoding", "Content-Length",
+            "Content-Type", "Date", "ETag", "Expires", "Last-Modified"};
+
+    private final AtomicLong mCompressedBytes = new AtomicLong();//累计传输字节数
+    private final AtomicLong mUncompressedBytes = new AtomicLong();//累计解压后字节数
+    private volatile TrafficListener mTrafficListener;
+
+    /**
+     * @Description 每个请求读取完响应后回调压缩前后的字节数，在网络线程中执行
+     */
+    public interface TrafficListener {
+        void onTraffic(Request<?> request, String contentEncoding, long compressedBytes, long uncompressedBytes);
+    }
+
+    public void setTrafficListener(TrafficListener listener) {
+        mTrafficListener = listener;
+    }
+
+    /**
+     * @Description 累计传输的字节数（压缩后）
+     */
+    public long getCompressedBytes() {
+        return mCompressedBytes.get();
+    }
+
+    /**
+     * @Description 累计解压后的字节数
+     */
+    public long getUncompressedBytes() {
+        return mUncompressedBytes.get();
+    }
+
+    @Override
+    public HttpResponse performRequest(Request<?> request, Map<String, String> additionalHeaders) throws IOException, AuthFailureError {
+        Map<String, String> headers = additionalHeaders;
+        if (!request.getHeaders().containsKey(HEADER_ACCEPT_ENCODING) && !additionalHeaders.containsKey(HEADER_ACCEPT_ENCODING)) {
+            headers = new HashMap<>(additionalHeaders);
+            headers.put(HEADER_ACCEPT_ENCODING, ENCODING_GZIP + ", " + ENCODING_DEFLATE);
+        }
+        HttpResponse response = super.performRequest(request, headers);
+        canonicalizeHeaders(response);
+        HttpEntity entity = response.getEntity();
+        InputStream content;
+        try {
+            // BasicHttpEntity的内容只能获取一次
+            content = entity == null ? null : entity.getContent();
+        } catch (IllegalStateException e) {
+            content = null;
+        }
+        if (content == null) {
+            if (entity != null) {
+                // 没有响应体的错误响应（例如503）没有内容，BasicNetwork读取时会抛出IllegalStateException，
+                // 请求以普通VolleyError结束而不会重试、回退到缓存或计入熔断，这里替换为空的响应体
+                BasicHttpEntity empty = new BasicHttpEntity();
+                empty.setContent(new ByteArrayInputStream(new byte[0]));
+                empty.setContentLength(0);
+                empty.setContentType(entity.getContentType());
+                response.setEntity(empty);
+            }
+            return response;
+        }
+
+        Header header = entity.getContentEncoding();
+        String encoding = header == null ? null : header.getValue();
+        if (!ENCODING_GZIP.equalsIgnoreCase(encoding) && !ENCODING_DEFLATE.equalsIgnoreCase(encoding)) {
+            encoding = null;
+        } else if (!hasResponseBody(response.getStatusLine().getStatusCode(), entity.getContentLength())) {
+            // 304、204等响应带有Content-Encoding但没有响应体，不需要解压
+            encoding = null;
+            response.removeHeaders(HEADER_CONTENT_ENCODING);
+        }
+        CountingInputStream compressed = new CountingInputStream(content, null);
+        InputStream inflated = encoding == null ? compressed : inflate(compressed, encoding);
+
+        BasicHttpEntity decoded = new BasicHttpEntity();
+        decoded.setContent(new CountingInputStream(inflated, new TrafficReport(request, encoding, compressed)));
+        decoded.setContentType(entity.getContentType());
+        if (encoding == null) {
+            decoded.setContentLength(entity.getContentLength());
+        } else {
+            // 解压后的长度未知，由BasicNetwork的缓冲区按需扩展
+            decoded.setContentLength(-1);
+            response.removeHeaders(HEADER_CONTENT_ENCODING);
+            response.removeHeaders(HEADER_CONTENT_LENGTH);
+        }
+        response.setEntity(decoded);
+        return response;
+    }
+
+    /**
+     * @Description 响应是否有响应体，1xx、204、304总是没有响应体，Content-Length为0时也没有
+     * 当前使用的Volley没有HEAD请求，不需要按请求方法判断
+     */
+    static boolean hasResponseBody(int statusCode, long contentLength) {
+        if ((statusCode >= 100 && statusCode < 200) || statusCode == 204 || statusCode == 304) {
+            return false;
+        }
+        return contentLength != 0;
+    }
+
+    /**
+     * @Description 按Content-Encoding解压响应体，解压流在第一次读取时才创建
+     *
+     * @param encoding gzip或deflate
+     */
+    static InputStream inflate(InputStream compressed, String encoding) {
+        return new LazyInflaterInputStream(compressed, ENCODING_GZIP.equalsIgnoreCase(encoding));
+    }
+
+    /**
+     * @Description BasicNetwork将响应头转换为区分大小写的HashMap，服务器返回cache-control等写法时缓存头和编码会被忽略
+     */
+    private static void canonicalizeHeaders(HttpResponse response) {
+        for (Header header : response.getAllHeaders()) {
+            String name = header.getName();
+            for (String canonical : CANONICAL_HEADERS) {
+                if (!canonical.equals(name) && canonical.equalsIgnoreCase(name)) {
+                    response.removeHeader(header);
+                    response.addHeader(canonical, header.getValue());
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @Description 响应读取完成后汇报压缩前后的字节数
+     */
+    private class TrafficReport {
+
+        private final Request<?> mRequest;
+        private final String mEncoding;
+        private final CountingInputStream mCompressed;
+
+        TrafficReport(Request<?> request, String encoding, CountingInputStream compressed) {
+            mRequest = request;
+            mEncoding = encoding;
+            mCompressed = compressed;
+        }
+
+        void report(long uncompressedBytes) {
+            long compressedBytes = mCompressed.getCount();
+            mCompressedBytes.addAndGet(compressedBytes);
+            mUncompressedBytes.addAndGet(uncompressedBytes);
+            mRequest.addMarker("traffic-" + (mEncoding == null ? "identity" : mEncoding) + "-" + compressedBytes + "/" + uncompressedBytes);
+            TrafficListener listener = mTrafficListener;
+            if (listener != null) {
+                listener.onTraffic(mRequest, mEncoding, compressedBytes, uncompressedBytes);
+            } else {
+                LogUtil.d(Constant.LOG_TAG, "traffic " + mRequest.getUrl() + " encoding=" + mEncoding
+                        + " compressed=" + compressedBytes + " uncompressed=" + uncompressedBytes);
+            }
+        }
+    }
+
+    /**
+     * @Description 第一次读取时才创建的解压流
+     * GZIPInputStream的构造方法会读取gzip头，分块传输的空响应体也会抛出EOFException，
+     * 请求被当作NoConnectionError处理；这里先读取一个字节，没有数据时按空响应体返回
+     */
+    private static class LazyInflaterInputStream extends InputStream {
+
+        private final PushbackInputStream mSource;
+        private final boolean mGzip;
+        private InputStream mInflater;
+        private boolean mEmpty;
+
+        LazyInflaterInputStream(InputStream source, boolean gzip) {
+            mSource = new PushbackInputStream(source, 1);
+            mGzip = gzip;
+        }
+
+        private InputStream inflater() throws IOException {
+            if (mInflater == null && !mEmpty) {
+                int first = mSource.read();
+                if (first == -1) {
+                    mEmpty = true;
+                    return null;
+                }
+                mSource.unread(first);
+                mInflater = mGzip ? new GZIPInputStream(mSource, INFLATE_BUFFER_SIZE) : new InflaterInputStream(mSource);
+            }
+            return mInflater;
+        }
+
+        @Override
+        public int read() throws IOException {
+            InputStream in = inflater();
+            return in == null ? -1 : in.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            InputStream in = inflater();
+            return in == null ? -1 : in.read(buffer, offset, count);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return mInflater == null ? 0 : mInflater.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mInflater != null) {
+                mInflater.close();
+            } else {
+                mSource.close();
+            }
+        }
+    }
+
+    /**
+     * @Description 统计已读取字节数的输入流，读到末尾或关闭时汇报一次
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private final TrafficReport mReport;
+        private long mCount;
+        private boolean mReported;
+
+        CountingInputStream(InputStream in, TrafficReport report) {
+            super(in);
+            mReport = report;
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                report();
+            } else {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int n = super.read(buffer, offset, count);
+            if (n == -1) {
+                report();
+            } else {
+                mCount += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            mCount += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            report();
+            super.close();
+        }
+
+        private void report() {
+            if (!mReported && mReport != null) {
+                mReported = true;
+                mReport.report(mCount);
+            }
+        }
+    }
+}
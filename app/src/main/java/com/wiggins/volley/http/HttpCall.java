@@ -0,0 +1,177 @@
+package com.wiggins.volley.http;
+
+import android.os.Looper;
+
+import com.android.volley.Request;
+import com.android.volley.VolleyError;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @Description 单次Http请求的句柄，每个请求持有自己的回调、取消状态和结果，多个请求可以同时进行
+ * @Author 一花一世界
+ */
+public class HttpCall<T> implements Future<T> {
+
+    private Request<?> mRequest;//当前句柄对应的Volley请求
+    private boolean mCanceled;//是否已取消
+    private boolean mDone;//是否已返回结果
+    private boolean mStopped;//返回结果后被取消，不再回调之后的刷新结果
+    private T mResult;//请求成功时的结果
+    private VolleyError mError;//请求失败时的异常
+
+    /**
+     * @Description 绑定Volley请求，取消句柄时同时取消该请求
+     */
+    synchronized void setRequest(Request<?> request) {
+        mRequest = request;
+        if (mCanceled && request != null) {
+            cancelRequest(request);
+        }
+    }
+
+    /**
+     * @Description 获取句柄对应的Volley请求
+     */
+    public synchronized Request<?> getRequest() {
+        return mRequest;
+    }
+
+    /**
+     * @Description 取消当前请求，取消后不会再回调HttpListener
+     */
+    public void cancel() {
+        cancel(true);
+    }
+
+    @Override
+    public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+        if (mDone && !mCanceled && !mStopped && mRequest != null) {
+            // 先返回缓存再刷新时请求仍在进行，取消刷新，已返回的结果不变
+            mStopped = true;
+            cancelRequest(mRequest);
+        }
+        if (mDone || mCanceled) {
+            return false;
+        }
+        mCanceled = true;
+        if (mRequest != null) {
+            cancelRequest(mRequest);
+        }
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * @Description 合并的请求只取消当前订阅，其他订阅者不受影响
+     */
+    private static void cancelRequest(Request<?> request) {
+        if (request instanceof BaseRequest) {
+            ((BaseRequest<?>) request).unsubscribe();
+        } else {
+            request.cancel();
+        }
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mCanceled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mDone || mCanceled;
+    }
+
+    /**
+     * @Description 请求成功时的结果，未完成或失败时返回null
+     */
+    public synchronized T getResult() {
+        return mResult;
+    }
+
+    /**
+     * @Description 请求失败时的异常，未完成或成功时返回null
+     */
+    public synchronized VolleyError getError() {
+        return mError;
+    }
+
+    /**
+     * @Description 阻塞等待请求结果，结果在主线程分发，因此不能在主线程中调用
+     * 请求已取消时抛出CancellationException
+     */
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        try {
+            return doGet(null);
+        } catch (TimeoutException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return doGet(TimeUnit.MILLISECONDS.convert(timeout, unit));
+    }
+
+    private synchronized T doGet(Long timeoutMs) throws InterruptedException, ExecutionException, TimeoutException {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            throw new IllegalStateException("HttpCall.get() must not be called on the main thread");
+        }
+        if (timeoutMs == null) {
+            while (!isDone()) {
+                wait(0);
+            }
+        } else {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            long remaining = timeoutMs;
+            while (!isDone() && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+        if (mCanceled) {
+            // 按Future的约定，取消时抛出CancellationException，InterruptedException只表示等待的线程被中断
+            throw new CancellationException("HttpCall canceled");
+        }
+        if (mError != null) {
+            throw new ExecutionException(mError);
+        }
+        if (!mDone) {
+            throw new TimeoutException();
+        }
+        return mResult;
+    }
+
+    /**
+     * @Description 记录成功结果，返回是否需要继续回调HttpListener
+     * 先返回缓存再刷新的缓存策略下会回调多次，以最后一次结果为准
+     */
+    synchronized boolean onResponse(T result) {
+        if (mCanceled || mStopped || mError != null) {
+            return false;
+        }
+        mResult = result;
+        mDone = true;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * @Description 记录失败结果，返回是否需要继续回调HttpListener
+     */
+    synchronized boolean onFailure(VolleyError error) {
+        if (mCanceled || mDone) {
+            return false;
+        }
+        mError = error;
+        mDone = true;
+        notifyAll();
+        return true;
+    }
+}
@@ -1,34 +1,43 @@
 package com.wiggins.volley.http;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.graphics.Bitmap;
+import android.net.ConnectivityManager;
 import android.os.NetworkOnMainThreadException;
+import android.os.Process;
+import android.view.View;
+import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import com.android.volley.AuthFailureError;
 import com.android.volley.Cache;
-import com.android.volley.DefaultRetryPolicy;
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
 import com.android.volley.Response;
 import com.android.volley.VolleyError;
 import com.android.volley.toolbox.ImageLoader;
-import com.android.volley.toolbox.ImageRequest;
 import com.android.volley.toolbox.JsonArrayRequest;
 import com.android.volley.toolbox.JsonObjectRequest;
 import com.android.volley.toolbox.NetworkImageView;
 import com.android.volley.toolbox.StringRequest;
-import com.android.volley.toolbox.Volley;
 import com.wiggins.volley.R;
 import com.wiggins.volley.base.BaseApplication;
+import com.wiggins.volley.bean.ResultData;
 import com.wiggins.volley.bean.ResultDesc;
 import com.wiggins.volley.bean.Weather;
 import com.wiggins.volley.bean.WeatherInfo;
 import com.wiggins.volley.listener.HttpListener;
+import com.wiggins.volley.listener.ResultListener;
 import com.wiggins.volley.utils.BitmapCache;
+import com.wiggins.volley.utils.BitmapPool;
 import com.wiggins.volley.utils.Constant;
 import com.wiggins.volley.utils.LogUtil;
+import com.wiggins.volley.utils.NetworkUtils;
 import com.wiggins.volley.utils.StringUtil;
+import com.wiggins.volley.utils.ThumbnailDiskCache;
 import com.wiggins.volley.utils.UIUtils;
 
 import org.apache.http.conn.ConnectTimeoutException;
@@ -38,7 +47,9 @@ import org.json.JSONObject;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.net.SocketTimeoutException;
 import java.util.HashMap;
 import java.util.Map;
@@ -49,8 +60,14 @@ import java.util.Map;
  */
 public class HttpRequestUtil {
 
-    public static RequestQueue requestQueue;//请求队列对象
-    public static HttpListener httpListener;//自定义Http请求回调监听
+    public static RequestQueue requestQueue;//请求队列对象，用于接口请求
+    public static RequestQueue imageQueue;//图片请求队列对象，与接口请求分开，避免大量图片请求占满接口请求的调度线程
+    public static ImageLoader imageLoader;//图片加载对象，进程内共用一个以便合并相同图片的请求
+    public static SizedImageLoader sizedImageLoader;//按显示尺寸解码的图片加载对象，与imageLoader共用BitmapCache
+    private static final SingleFlight singleFlight = new SingleFlight();//合并进行中的相同接口请求
+    private static final CircuitBreaker circuitBreaker = new CircuitBreaker();//按主机熔断，接口和图片队列共用
+    private static final RequestMetrics requestMetrics = new RequestMetrics();//请求各阶段耗时统计，接口和图片队列共用
+    private static boolean connectivityRegistered;//是否已监听网络状态变化
 
     /**
      * @Description 上下文
@@ -59,6 +76,23 @@ public class HttpRequestUtil {
         return BaseApplication.getContext();
     }
 
+    /**
+     * @Description 监听网络状态变化并通知熔断器，无网络期间的失败不计入熔断，网络恢复后立即重置熔断状态
+     * 注册时会立即收到当前的网络状态
+     */
+    private static void registerConnectivityReceiver() {
+        if (connectivityRegistered) {
+            return;
+        }
+        connectivityRegistered = true;
+        getContext().registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                circuitBreaker.setNetworkAvailable(NetworkUtils.isNetworkAvailable());
+            }
+        }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
     /**
      * @Description 用于返回RequestQueue对象，如果为空则创建它
      */
@@ -66,79 +100,186 @@ public class HttpRequestUtil {
         if (requestQueue == null) {
             synchronized (HttpRequestUtil.class) {
                 if (requestQueue == null) {
-                    // 建立Volley的Http请求队列
-                    requestQueue = Volley.newRequestQueue(getContext());
+                    registerConnectivityReceiver();
+                    // 建立Volley的Http请求队列，使用支持gzip压缩的HttpStack
+                    requestQueue = new RequestQueueBuilder(getContext())
+                            .threadPoolSize(2)
+                            .threadPriority(Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_MORE_FAVORABLE)
+                            .cache(new SegmentDiskCache(new File(getContext().getCacheDir(), "http-cache"), 5 * 1024 * 1024))
+                            .circuitBreaker(circuitBreaker)
+                            .metrics(requestMetrics)
+                            .build();
                 }
             }
         }
         return requestQueue;
     }
 
+    /**
+     * @Description 用于返回图片请求的RequestQueue对象，如果为空则创建它
+     */
+    public static RequestQueue getImageQueue() {
+        if (imageQueue == null) {
+            synchronized (HttpRequestUtil.class) {
+                if (imageQueue == null) {
+                    registerConnectivityReceiver();
+                    // 调度线程数按CPU核数设置，限制在2~4之间
+                    int threadPoolSize = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+                    imageQueue = new RequestQueueBuilder(getContext())
+                            .threadPoolSize(threadPoolSize)
+                            .threadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+                            .cache(new SegmentDiskCache(new File(getContext().getCacheDir(), "image-cache"), 20 * 1024 * 1024))
+                            .circuitBreaker(circuitBreaker)
+                            .metrics(requestMetrics)
+                            .build();
+                }
+            }
+        }
+        return imageQueue;
+    }
+
+    /**
+     * @Description 用于返回ImageLoader对象，如果为空则创建它
+     * 进程内只有一个ImageLoader和一个BitmapCache，相同URL+尺寸的并发请求会被合并为一次网络请求
+     */
+    public static ImageLoader getImageLoader() {
+        if (imageLoader == null) {
+            synchronized (HttpRequestUtil.class) {
+                if (imageLoader == null) {
+                    //参数1：RequestQueue对象
+                    //参数2：ImageCache对象
+                    imageLoader = new ImageLoader(getImageQueue(), BitmapCache.getInstance());
+                }
+            }
+        }
+        return imageLoader;
+    }
+
+    /**
+     * @Description 用于返回SizedImageLoader对象，如果为空则创建它
+     */
+    public static SizedImageLoader getSizedImageLoader() {
+        if (sizedImageLoader == null) {
+            synchronized (HttpRequestUtil.class) {
+                if (sizedImageLoader == null) {
+                    //BitmapCache淘汰且不再显示的图片以及缩放时丢弃的中间图片进入BitmapPool，解码时复用其内存
+                    //内存缓存未命中时先读取磁盘中缩放后的图片，最后才从原图解码
+                    ThumbnailDiskCache thumbnailCache = new ThumbnailDiskCache(new File(getContext().getCacheDir(), "thumbnail-cache"), 10 * 1024 * 1024);
+                    sizedImageLoader = new SizedImageLoader(getImageQueue(), BitmapCache.getInstance(), Bitmap.Config.RGB_565,
+                            BitmapPool.getInstance(), thumbnailCache);
+                }
+            }
+        }
+        return sizedImageLoader;
+    }
+
     /**
      * 通过ImageRequest来显示网络图片
      * 使用：
      * 1. 创建一个RequestQueue对象
-     * 2. 创建一个ImageRequest对象
+     * 2. 创建一个ScaledImageRequest对象，按ImageView的显示尺寸解码
      * 3. 将Request对象添加到RequestQueue里面
      *
      * @param url       请求图片的地址
      * @param imageView 图片的容器ImageView
      */
-    public static void setImageRequest(String url, final ImageView imageView) {
+    public static void setImageRequest(String url, ImageView imageView) {
+        setImageRequest(url, imageView, null);
+    }
+
+    /**
+     * 通过ImageRequest来显示网络图片，请求带有标签，可以通过cancelAll(tag)取消
+     *
+     * @param url       请求图片的地址
+     * @param imageView 图片的容器ImageView
+     * @param tag       请求标签，可为空，页面中使用BaseActivity.getRequestTag()
+     */
+    public static void setImageRequest(String url, final ImageView imageView, Object tag) {
         //参数1：图片的URL地址
-        //参数2：图片请求成功的回调，这里可以把返回的Bitmap参数设置到ImageView中
-        //参数3和4：允许图片最大宽度和高度，如果指定网络图片的宽度或高度大于这里的最大值，则会对图片进行压缩，指定成0的话就表示不管图片有多大都不会进行压缩
+        //参数2和3：目标宽度和高度，按ImageView布局中的尺寸，未指定时按屏幕尺寸，图片按该尺寸降采样解码
+        //参数4：ImageView的ScaleType，CENTER_CROP时两边都不小于目标尺寸，其他方式完整显示在目标尺寸内
         //参数5：图片的颜色属性，Bitmap.Config下的几个常量都可以在这里使用，其中ARGB_8888可以展示最好的颜色属性，每个图片像素占据4个字节的大小，而RGB_565则表示每个图片像素占据2个字节大小
-        //参数6：图片请求失败的回调，这里可以设置当请求失败时在ImageView中显示一张默认图片
-        ImageRequest imageRequest = new ImageRequest(url, new Response.Listener<Bitmap>() {
+        //参数6：图片请求成功的回调，这里可以把返回的Bitmap参数设置到ImageView中
+        //参数7：图片请求失败的回调，这里可以设置当请求失败时在ImageView中显示一张默认图片
+        ScaledImageRequest imageRequest = new ScaledImageRequest(url, SizedImageLoader.getTargetWidth(imageView),
+                SizedImageLoader.getTargetHeight(imageView), imageView.getScaleType(), Bitmap.Config.RGB_565, new Response.Listener<Bitmap>() {
             @Override
             public void onResponse(Bitmap bitmap) {
                 imageView.setImageBitmap(bitmap);
             }
-        }, 0, 0, Bitmap.Config.RGB_565, new Response.ErrorListener() {
+        }, new Response.ErrorListener() {
             @Override
             public void onErrorResponse(VolleyError volleyError) {
                 imageView.setBackgroundResource(R.drawable.image_error);
             }
         });
-        getRequestQueue().add(imageRequest);
+        // 超时时间按图片所在主机的耗时自适应
+        imageRequest.setRetryPolicy(AdaptiveRetryPolicy.forHost(url));
+        // 请求标签
+        imageRequest.setTag(tag);
+        getImageQueue().add(imageRequest);
     }
 
     /**
      * 通过ImageLoader来显示网络图片
      * 使用：
      * 1. 创建一个RequestQueue对象
-     * 2. 创建一个ImageLoader对象
-     * 3. 获取一个ImageListener对象
-     * 4. 调用ImageLoader的get()方法加载网络上的图片
+     * 2. 获取共用的SizedImageLoader对象
+     * 3. 调用SizedImageLoader的bind()方法加载网络上的图片并绑定到ImageView
      * 特点：
-     * 内部是使用ImageRequest来实现的，它不仅可以对图片进行缓存，还可以过滤掉重复的链接，避免重复发送请求。
+     * 内部是使用ScaledImageRequest来实现的，图片按ImageView的布局尺寸和ScaleType降采样解码，内存占用与显示尺寸一致；
+     * 它不仅可以对图片按地址+尺寸进行缓存，还可以过滤掉重复的链接，避免重复发送请求。
      *
      * @param url       请求图片的地址
      * @param imageView 图片的容器ImageView
      */
     public static void setImageLoader(String url, ImageView imageView) {
-        //参数1：RequestQueue对象
-        //参数2：ImageCache对象
-        ImageLoader loader = new ImageLoader(getRequestQueue(), new BitmapCache());
-        //参数1：显示图片的ImageView控件
-        //参数2：默认显示的图片
-        //参数3：请求失败时显示的图片
-        ImageLoader.ImageListener imageListener = ImageLoader.getImageListener(imageView, R.drawable.image_default, R.drawable.image_error);
-        //参数1：图片的URL地址
-        //参数2：ImageListener对象
-        loader.get(url, imageListener);
         //参数1：图片的URL地址
-        //参数2：ImageListener对象
-        //参数3和4：图片允许的最大宽度和高度
-        //loader.get(url, imageListener, 200, 200);
+        //参数2：显示图片的ImageView控件，按其布局尺寸和ScaleType解码，内存中按地址+尺寸缓存；
+        //      加载绑定到该控件，列表行复用时取消之前的加载，之前加载的结果不会再显示到该控件上
+        //参数3：默认显示的图片
+        //参数4：请求失败时显示的图片
+        getSizedImageLoader().bind(url, imageView, R.drawable.image_default, R.drawable.image_error);
+    }
+
+    /**
+     * 通过ImageLoader来显示网络图片，指定目标尺寸
+     *
+     * @param url       请求图片的地址
+     * @param imageView 图片的容器ImageView
+     * @param maxWidth  目标宽度，0表示不限制
+     * @param maxHeight 目标高度，0表示不限制
+     */
+    public static void setImageLoader(String url, ImageView imageView, int maxWidth, int maxHeight) {
+        getSizedImageLoader().bind(url, imageView, maxWidth, maxHeight, R.drawable.image_default, R.drawable.image_error);
+    }
+
+    /**
+     * @Description 取消setImageLoader()绑定到ImageView的加载，在列表行被回收时调用
+     */
+    public static void cancelImageLoader(ImageView imageView) {
+        SizedImageLoader.unbind(imageView);
+    }
+
+    /**
+     * @Description 取消view及其所有子View中setImageLoader()绑定的加载，在页面销毁时调用
+     */
+    public static void cancelImageLoaders(View view) {
+        if (view instanceof ImageView) {
+            SizedImageLoader.unbind((ImageView) view);
+        } else if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                cancelImageLoaders(group.getChildAt(i));
+            }
+        }
     }
 
     /**
      * 通过NetWorkImageView来显示网络图片
      * 使用：
      * 1. 创建一个RequestQueue对象
-     * 2. 创建一个ImageLoader对象
+     * 2. 获取共用的ImageLoader对象
      * 3. 在布局文件中添加一个NetworkImageView控件
      * 4. 在代码中获取该控件的实例
      * 5. 设置要加载的图片地址
@@ -152,7 +293,7 @@ public class HttpRequestUtil {
      * @param netWorkImageView 图片的容器NetworkImageView
      */
     public static void setNetWorkImageView(String url, NetworkImageView netWorkImageView) {
-        ImageLoader loader = new ImageLoader(getRequestQueue(), new BitmapCache());
+        ImageLoader loader = getImageLoader();
         netWorkImageView.setDefaultImageResId(R.drawable.image_default);
         netWorkImageView.setErrorImageResId(R.drawable.image_error);
         netWorkImageView.setImageUrl(url, loader);
@@ -165,10 +306,12 @@ public class HttpRequestUtil {
      * @param tag      请求标签
      * @param params   请求参数
      * @param listener 自定义Http请求回调
+     * @return 当前请求的句柄，可用于取消请求或获取结果
      */
-    public static void exampleString(String url, String tag, final Map<String, String> params, HttpListener listener) {
+    public static HttpCall<ResultDesc> exampleString(String url, String tag, final Map<String, String> params, HttpListener listener) {
+        HttpCall<ResultDesc> call = new HttpCall<>();
         // 创建当前请求对象
-        StringRequest request = new StringRequest(Request.Method.POST, url, getListener(listener), getErrorListener(listener)) {
+        StringRequest request = new StringRequest(Request.Method.POST, url, getListener(call, listener), getErrorListener(call, listener)) {
 
             // 请求参数
             @Override
@@ -190,14 +333,15 @@ public class HttpRequestUtil {
                 return headers;
             }
         };
-        // 第一个代表超时时间：即超过20s认为超时，第三个参数代表最大重试次数，这里设置为1.0f代表如果超时则不重试
-        request.setRetryPolicy(new DefaultRetryPolicy(20 * 1000, 1, 1.0f));
+        // 超时时间按该接口的耗时自适应，超时后指数退避重试，总时长不超过30s
+        request.setRetryPolicy(new AdaptiveRetryPolicy(request.getUrl()));
         if (!StringUtil.isEmpty(tag)) {
             // 设置该请求的标签
             request.setTag(tag);
         }
         // 将请求添加到队列中
-        getRequestQueue().add(request);
+        call.setRequest(getRequestQueue().add(request));
+        return call;
     }
 
     /**
@@ -205,14 +349,10 @@ public class HttpRequestUtil {
      *
      * @param url      访问服务器地址
      * @param listener 自定义Http请求回调
+     * @return 当前请求的句柄，可用于取消请求或获取结果
      */
-    public static void getString(String url, HttpListener listener) {
-        // 创建当前请求对象
-        StringRequest request = new StringRequest(url, getListener(listener), getErrorListener(listener));
-        // 第一个代表超时时间：即超过20s认为超时，第三个参数代表最大重试次数，这里设置为1.0f代表如果超时则不重试
-        request.setRetryPolicy(new DefaultRetryPolicy(20 * 1000, 1, 1.0f));
-        // 将请求添加到队列中
-        getRequestQueue().add(request);
+    public static HttpCall<ResultDesc> getString(String url, HttpListener listener) {
+        return getString(url, null, CachePolicy.DEFAULT, listener);
     }
 
     /**
@@ -221,28 +361,48 @@ public class HttpRequestUtil {
      * @param url      访问服务器地址
      * @param params   请求参数
      * @param listener 自定义Http请求回调
+     * @return 当前请求的句柄，可用于取消请求或获取结果
      */
-    public static void getString(String url, final Map<String, String> params, HttpListener listener) {
-        // 参数拼接
-        StringBuilder sb = new StringBuilder();
-        boolean isFirst = true;
-        if (params != null && params.size() != 0) {
-            for (String key : params.keySet()) {
-                if (isFirst) {
-                    sb.append(key + "=" + params.get(key));
-                    isFirst = false;
-                } else {
-                    sb.append("&" + key + "=" + params.get(key));
-                }
-            }
-            url += "?" + sb.toString();
-        }
+    public static HttpCall<ResultDesc> getString(String url, final Map<String, String> params, HttpListener listener) {
+        return getString(url, params, CachePolicy.DEFAULT, listener);
+    }
+
+    /**
+     * get 请求，按指定的缓存策略使用缓存
+     *
+     * @param url         访问服务器地址
+     * @param params      请求参数，可为空
+     * @param cachePolicy 缓存策略
+     * @param listener    自定义Http请求回调
+     * @return 当前请求的句柄，可用于取消请求或获取结果
+     */
+    public static HttpCall<ResultDesc> getString(String url, Map<String, String> params, CachePolicy cachePolicy, HttpListener listener) {
+        return getString(url, params, cachePolicy, null, listener);
+    }
+
+    /**
+     * get 请求，按指定的缓存策略使用缓存，请求标记为tag，可通过cancelAll(tag)取消
+     *
+     * @param url         访问服务器地址
+     * @param params      请求参数，可为空
+     * @param cachePolicy 缓存策略
+     * @param tag         请求标签，通常为发起请求的Activity，可为空
+     * @param listener    自定义Http请求回调
+     * @return 当前请求的句柄，可用于取消请求或获取结果
+     */
+    public static HttpCall<ResultDesc> getString(String url, Map<String, String> params, CachePolicy cachePolicy, Object tag, HttpListener listener) {
+        HttpCall<ResultDesc> call = new HttpCall<>();
         // 创建当前请求对象
-        StringRequest request = new StringRequest(url, getListener(listener), getErrorListener(listener));
-        // 第一个代表超时时间：即超过20s认为超时，第三个参数代表最大重试次数，这里设置为1.0f代表如果超时则不重试
-        request.setRetryPolicy(new DefaultRetryPolicy(20 * 1000, 1, 1.0f));
-        // 将请求添加到队列中
-        getRequestQueue().add(request);
+        HttpStringRequest request = new HttpStringRequest(appendParams(url, params), getListener(call, listener), getErrorListener(call, listener));
+        // 请求标签
+        request.setTag(tag);
+        // 缓存策略
+        request.setCachePolicy(cachePolicy);
+        // 超时时间按该接口的耗时自适应，超时后指数退避重试，总时长不超过30s
+        request.setRetryPolicy(new AdaptiveRetryPolicy(request.getUrl()));
+        // 将请求添加到队列中，相同的请求正在进行时只订阅其结果
+        call.setRequest(singleFlight.add(getRequestQueue(), request));
+        return call;
     }
 
     /**
@@ -251,21 +411,177 @@ public class HttpRequestUtil {
      * @param url      访问服务器地址
      * @param params   请求参数
      * @param listener 自定义Http请求回调
+     * @return 当前请求的句柄，可用于取消请求或获取结果
+     */
+    public static HttpCall<ResultDesc> postString(String url, final Map<String, String> params, HttpListener listener) {
+        return postString(url, params, CachePolicy.DEFAULT, listener);
+    }
+
+    /**
+     * post 请求，按指定的缓存策略使用缓存，缓存key包含请求参数
+     *
+     * @param url         访问服务器地址
+     * @param params      请求参数
+     * @param cachePolicy 缓存策略
+     * @param listener    自定义Http请求回调
+     * @return 当前请求的句柄，可用于取消请求或获取结果
+     */
+    public static HttpCall<ResultDesc> postString(String url, Map<String, String> params, CachePolicy cachePolicy, HttpListener listener) {
+        return postString(url, params, cachePolicy, null, listener);
+    }
+
+    /**
+     * post 请求，按指定的缓存策略使用缓存，请求标记为tag，可通过cancelAll(tag)取消
+     *
+     * @param url         访问服务器地址
+     * @param params      请求参数
+     * @param cachePolicy 缓存策略
+     * @param tag         请求标签，通常为发起请求的Activity，可为空
+     * @param listener    自定义Http请求回调
+     * @return 当前请求的句柄，可用于取消请求或获取结果
      */
-    public static void postString(String url, final Map<String, String> params, HttpListener listener) {
+    public static HttpCall<ResultDesc> postString(String url, Map<String, String> params, CachePolicy cachePolicy, Object tag, HttpListener listener) {
+        HttpCall<ResultDesc> call = new HttpCall<>();
         // 创建当前请求对象
-        StringRequest request = new StringRequest(Request.Method.POST, url, getListener(listener), getErrorListener(listener)) {
+        HttpStringRequest request = new HttpStringRequest(Request.Method.POST, url, getListener(call, listener), getErrorListener(call, listener));
+        // 请求标签
+        request.setTag(tag);
+        // 请求参数
+        request.setParams(params);
+        // 缓存策略
+        request.setCachePolicy(cachePolicy);
+        // 超时时间按该接口的耗时自适应，超时后指数退避重试，总时长不超过30s
+        request.setRetryPolicy(new AdaptiveRetryPolicy(request.getUrl()));
+        // 将请求添加到队列中，相同的请求正在进行时只订阅其结果
+        call.setRequest(singleFlight.add(getRequestQueue(), request));
+        return call;
+    }
 
-            // 请求参数
-            @Override
-            protected Map<String, String> getParams() throws AuthFailureError {
-                return params;
-            }
-        };
-        // 第一个代表超时时间：即超过20s认为超时，第三个参数代表最大重试次数，这里设置为1.0f代表如果超时则不重试
-        request.setRetryPolicy(new DefaultRetryPolicy(20 * 1000, 1, 1.0f));
-        // 将请求添加到队列中
-        getRequestQueue().add(request);
+    /**
+     * get 请求，返回数据在网络线程中一次解析为具体类型
+     *
+     * @param url      访问服务器地址
+     * @param params   请求参数
+     * @param type     result字段的类型，示例：new TypeToken<List<TodayHistoryQuery>>(){}.getType()
+     * @param listener 自定义Http请求回调
+     * @return 当前请求的句柄，可用于取消请求或获取结果
+     */
+    public static <T> HttpCall<ResultData<T>> getResult(String url, final Map<String, String> params, Type type, ResultListener<T> listener) {
+        return getResult(url, params, type, CachePolicy.DEFAULT, listener);
+    }
+
+    /**
+     * get 请求，返回数据在网络线程中一次解析为具体类型，按指定的缓存策略使用缓存，接口返回错误码时不缓存
+     *
+     * @param url         访问服务器地址
+     * @param params      请求参数，可为空
+     * @param type        result字段的类型
+     * @param cachePolicy 缓存策略
+     * @param listener    自定义Http请求回调
+     * @return 当前请求的句柄，可用于取消请求或获取结果
+     */
+    public static <T> HttpCall<ResultData<T>> getResult(String url, Map<String, String> params, Type type, CachePolicy cachePolicy, ResultListener<T> listener) {
+        return getResult(url, params, type, cachePolicy, null, listener);
+    }
+
+    /**
+     * get 请求，返回数据在网络线程中一次解析为具体类型，按指定的缓存策略使用缓存，请求标记为tag，可通过cancelAll(tag)取消
+     *
+     * @param url         访问服务器地址
+     * @param params      请求参数，可为空
+     * @param type        result字段的类型
+     * @param cachePolicy 缓存策略
+     * @param tag         请求标签，通常为发起请求的Activity，可为空
+     * @param listener    自定义Http请求回调
+     * @return 当前请求的句柄，可用于取消请求或获取结果
+     */
+    public static <T> HttpCall<ResultData<T>> getResult(String url, Map<String, String> params, Type type, CachePolicy cachePolicy, Object tag, ResultListener<T> listener) {
+        HttpCall<ResultData<T>> call = new HttpCall<>();
+        // 创建当前请求对象
+        ResultRequest<T> request = new ResultRequest<T>(appendParams(url, params), type, getResultListener(call, listener), getErrorListener(call, listener));
+        // 请求标签
+        request.setTag(tag);
+        // 缓存策略
+        request.setCachePolicy(cachePolicy);
+        // 超时时间按该接口的耗时自适应，超时后指数退避重试，总时长不超过30s
+        request.setRetryPolicy(new AdaptiveRetryPolicy(request.getUrl()));
+        // 将请求添加到队列中，相同的请求正在进行时只订阅其结果
+        call.setRequest(singleFlight.add(getRequestQueue(), request));
+        return call;
+    }
+
+    /**
+     * post 请求，返回数据在网络线程中一次解析为具体类型
+     *
+     * @param url      访问服务器地址
+     * @param params   请求参数
+     * @param type     result字段的类型，示例：new TypeToken<List<TodayHistoryQueryDetail>>(){}.getType()
+     * @param listener 自定义Http请求回调
+     * @return 当前请求的句柄，可用于取消请求或获取结果
+     */
+    public static <T> HttpCall<ResultData<T>> postResult(String url, final Map<String, String> params, Type type, ResultListener<T> listener) {
+        return postResult(url, params, type, CachePolicy.DEFAULT, listener);
+    }
+
+    /**
+     * post 请求，返回数据在网络线程中一次解析为具体类型，按指定的缓存策略使用缓存，缓存key包含请求参数
+     *
+     * @param url         访问服务器地址
+     * @param params      请求参数
+     * @param type        result字段的类型
+     * @param cachePolicy 缓存策略
+     * @param listener    自定义Http请求回调
+     * @return 当前请求的句柄，可用于取消请求或获取结果
+     */
+    public static <T> HttpCall<ResultData<T>> postResult(String url, Map<String, String> params, Type type, CachePolicy cachePolicy, ResultListener<T> listener) {
+        return postResult(url, params, type, cachePolicy, null, listener);
+    }
+
+    /**
+     * post 请求，返回数据在网络线程中一次解析为具体类型，按指定的缓存策略使用缓存，请求标记为tag，可通过cancelAll(tag)取消
+     *
+     * @param url         访问服务器地址
+     * @param params      请求参数
+     * @param type        result字段的类型
+     * @param cachePolicy 缓存策略
+     * @param tag         请求标签，通常为发起请求的Activity，可为空
+     * @param listener    自定义Http请求回调
+     * @return 当前请求的句柄，可用于取消请求或获取结果
+     */
+    public static <T> HttpCall<ResultData<T>> postResult(String url, Map<String, String> params, Type type, CachePolicy cachePolicy, Object tag, ResultListener<T> listener) {
+        return postResult(url, params, type, cachePolicy, tag, Request.Priority.NORMAL, listener);
+    }
+
+    /**
+     * post 请求，指定请求优先级，用于预加载等不需要立即返回的请求
+     *
+     * @param url         访问服务器地址
+     * @param params      请求参数
+     * @param type        result字段的类型
+     * @param cachePolicy 缓存策略
+     * @param tag         请求标签，可为空
+     * @param priority    请求优先级，示例：Request.Priority.LOW
+     * @param listener    自定义Http请求回调
+     * @return 当前请求的句柄，可用于取消请求或获取结果
+     */
+    public static <T> HttpCall<ResultData<T>> postResult(String url, Map<String, String> params, Type type, CachePolicy cachePolicy, Object tag,
+                                                         Request.Priority priority, ResultListener<T> listener) {
+        HttpCall<ResultData<T>> call = new HttpCall<>();
+        // 创建当前请求对象
+        ResultRequest<T> request = new ResultRequest<T>(Request.Method.POST, url, type, getResultListener(call, listener), getErrorListener(call, listener));
+        // 请求标签
+        request.setTag(tag);
+        // 请求优先级
+        request.setPriority(priority);
+        // 请求参数
+        request.setParams(params);
+        // 缓存策略
+        request.setCachePolicy(cachePolicy);
+        // 超时时间按该接口的耗时自适应，超时后指数退避重试，总时长不超过30s
+        request.setRetryPolicy(new AdaptiveRetryPolicy(request.getUrl()));
+        // 将请求添加到队列中，相同的请求正在进行时只订阅其结果
+        call.setRequest(singleFlight.add(getRequestQueue(), request));
+        return call;
     }
 
     /**
@@ -275,7 +591,19 @@ public class HttpRequestUtil {
      * @param url    访问服务器地址
      * @param params 请求参数
      */
-    public static void requestJsonObject(int method, String url, final Map<String, String> params) {
+    public static void requestJsonObject(int method, String url, Map<String, String> params) {
+        requestJsonObject(method, url, params, null);
+    }
+
+    /**
+     * JsonObjectRequest 请求，请求带有标签，可以通过cancelAll(tag)取消
+     *
+     * @param method 请求方式
+     * @param url    访问服务器地址
+     * @param params 请求参数
+     * @param tag    请求标签，可为空
+     */
+    public static void requestJsonObject(int method, String url, final Map<String, String> params, Object tag) {
         // 创建当前请求对象
         JsonObjectRequest request = new JsonObjectRequest(method, url, params == null ? null : new JSONObject(params), new Response.Listener<JSONObject>() {
             @Override
@@ -288,8 +616,10 @@ public class HttpRequestUtil {
                 //失败响应时回调此函数
             }
         });
-        // 第一个代表超时时间：即超过20s认为超时，第三个参数代表最大重试次数，这里设置为1.0f代表如果超时则不重试
-        request.setRetryPolicy(new DefaultRetryPolicy(20 * 1000, 1, 1.0f));
+        // 超时时间按该接口的耗时自适应，超时后指数退避重试，总时长不超过30s
+        request.setRetryPolicy(new AdaptiveRetryPolicy(request.getUrl()));
+        // 请求标签
+        request.setTag(tag);
         // 将请求添加到队列中
         getRequestQueue().add(request);
     }
@@ -300,6 +630,16 @@ public class HttpRequestUtil {
      * @param url 访问服务器地址
      */
     public static void requestJsonArray(String url) {
+        requestJsonArray(url, null);
+    }
+
+    /**
+     * JsonArrayRequest 请求，请求带有标签，可以通过cancelAll(tag)取消
+     *
+     * @param url 访问服务器地址
+     * @param tag 请求标签，可为空
+     */
+    public static void requestJsonArray(String url, Object tag) {
         // 创建当前请求对象
         JsonArrayRequest request = new JsonArrayRequest(url, new Response.Listener<JSONArray>() {
             @Override
@@ -312,8 +652,10 @@ public class HttpRequestUtil {
                 //失败响应时回调此函数
             }
         });
-        // 第一个代表超时时间：即超过20s认为超时，第三个参数代表最大重试次数，这里设置为1.0f代表如果超时则不重试
-        request.setRetryPolicy(new DefaultRetryPolicy(20 * 1000, 1, 1.0f));
+        // 超时时间按该接口的耗时自适应，超时后指数退避重试，总时长不超过30s
+        request.setRetryPolicy(new AdaptiveRetryPolicy(request.getUrl()));
+        // 请求标签
+        request.setTag(tag);
         // 将请求添加到队列中
         getRequestQueue().add(request);
     }
@@ -327,7 +669,32 @@ public class HttpRequestUtil {
      * @param params 请求参数
      */
     public static <T> void requestGson(int method, String url, Class<T> clazz, final Map<String, String> params) {
-        GsonRequest<T> request = new GsonRequest<T>(method, url, clazz, new Response.Listener<T>() {
+        requestGson(method, url, (Type) clazz, params, null);
+    }
+
+    /**
+     * 自定义GsonRequest<T> 请求，支持泛型类型，示例：new TypeToken<List<TodayHistoryQuery>>(){}.getType()
+     *
+     * @param method 请求方式，示例：Request.Method.POST
+     * @param url    访问服务器地址
+     * @param type   解析类型
+     * @param params 请求参数
+     */
+    public static <T> void requestGson(int method, String url, Type type, Map<String, String> params) {
+        requestGson(method, url, type, params, null);
+    }
+
+    /**
+     * 自定义GsonRequest<T> 请求，请求带有标签，可以通过cancelAll(tag)取消
+     *
+     * @param method 请求方式，示例：Request.Method.POST
+     * @param url    访问服务器地址
+     * @param type   解析类型
+     * @param params 请求参数
+     * @param tag    请求标签，可为空
+     */
+    public static <T> void requestGson(int method, String url, Type type, final Map<String, String> params, Object tag) {
+        GsonRequest<T> request = new GsonRequest<T>(method, url, type, new Response.Listener<T>() {
             @Override
             public void onResponse(T t) {
                 // Gson解析示例
@@ -344,25 +711,44 @@ public class HttpRequestUtil {
                 return params;
             }
         };
-        // 第一个代表超时时间：即超过20s认为超时，第三个参数代表最大重试次数，这里设置为1.0f代表如果超时则不重试
-        request.setRetryPolicy(new DefaultRetryPolicy(20 * 1000, 1, 1.0f));
+        // 超时时间按该接口的耗时自适应，超时后指数退避重试，总时长不超过30s
+        request.setRetryPolicy(new AdaptiveRetryPolicy(request.getUrl()));
+        // 请求标签
+        request.setTag(tag);
         // 将请求添加到队列中
         getRequestQueue().add(request);
     }
 
     /**
-     * 自定义XMLRequest请求
+     * 自定义XmlRequest<T>请求，在网络线程中解析，回调中只收到解析结果
+     *
+     * @param method 请求方式，示例：Request.Method.POST
+     * @param url    访问服务器地址
+     * @param params 请求参数
+     */
+    public static void requestXml(int method, String url, Map<String, String> params) {
+        requestXml(method, url, params, null);
+    }
+
+    /**
+     * 自定义XmlRequest<T>请求，请求带有标签，可以通过cancelAll(tag)取消
      *
      * @param method 请求方式，示例：Request.Method.POST
      * @param url    访问服务器地址
      * @param params 请求参数
+     * @param tag    请求标签，可为空
      */
-    public static void requestXml(int method, String url, final Map<String, String> params) {
-        XMLRequest request = new XMLRequest(method, url, new Response.Listener<XmlPullParser>() {
+    public static void requestXml(int method, String url, final Map<String, String> params, Object tag) {
+        XmlRequest<String> request = new XmlRequest<String>(method, url, new XmlRequest.Mapper<String>() {
             @Override
-            public void onResponse(XmlPullParser xmlPullParser) {
+            public String map(XmlPullParser parser) throws XmlPullParserException, IOException {
                 // XML解析示例
-                getXmlPullParser(xmlPullParser);
+                return getXmlPullParser(parser);
+            }
+        }, new Response.Listener<String>() {
+            @Override
+            public void onResponse(String cities) {
+                LogUtil.e(Constant.LOG_TAG, "XML 数据解析: " + cities);
             }
         }, new Response.ErrorListener() {
             @Override
@@ -375,8 +761,10 @@ public class HttpRequestUtil {
                 return params;
             }
         };
-        // 第一个代表超时时间：即超过20s认为超时，第三个参数代表最大重试次数，这里设置为1.0f代表如果超时则不重试
-        request.setRetryPolicy(new DefaultRetryPolicy(20 * 1000, 1, 1.0f));
+        // 超时时间按该接口的耗时自适应，超时后指数退避重试，总时长不超过30s
+        request.setRetryPolicy(new AdaptiveRetryPolicy(request.getUrl()));
+        // 请求标签
+        request.setTag(tag);
         // 将请求添加到队列中
         getRequestQueue().add(request);
     }
@@ -411,17 +799,65 @@ public class HttpRequestUtil {
     /**
      * @Description 取消网络请求
      */
-    public static void cancelAll(Object tag) {
+    public static void cancelAll(final Object tag) {
         if (tag != null) {
-            getRequestQueue().cancelAll(tag);
+            // 合并的请求只取消该标签的订阅者，其他页面订阅的相同请求继续进行
+            getRequestQueue().cancelAll(new RequestQueue.RequestFilter() {
+                @Override
+                public boolean apply(Request<?> request) {
+                    return request instanceof BaseRequest ? ((BaseRequest<?>) request).cancelByTag(tag) : request.getTag() == tag;
+                }
+            });
+            getImageQueue().cancelAll(tag);
         }
     }
 
+    /**
+     * @Description 接口队列和图片队列中排队等待和正在执行网络请求的请求数，用于预加载判断是否有前台请求
+     * 按RequestMetrics的统计计算，正在读取缓存和等待主线程回调的请求不计入
+     */
+    public static int getActiveRequestCount() {
+        return requestMetrics.getQueueDepth() + requestMetrics.getBusyDispatchers();
+    }
+
     /**
      * @Description 重启当前请求队列
      */
     public static void start() {
         getRequestQueue().start();
+        getImageQueue().start();
+    }
+
+    /**
+     * @Description 按系统内存紧张程度释放图片内存缓存和BitmapPool，由BaseApplication的onTrimMemory()/onLowMemory()调用
+     * 先释放内存缓存再释放池，内存缓存中移除的不再显示的图片进入池后随池一起释放
+     */
+    public static void trimMemory(int level) {
+        BitmapCache.getInstance().trimMemory(level);
+        BitmapPool.getInstance().trimMemory(level);
+        LogUtil.d(Constant.LOG_TAG, "trimMemory level=" + level + " " + BitmapCache.getInstance().getStats()
+                + " " + BitmapPool.getInstance().getStats());
+    }
+
+    /**
+     * 请求各阶段耗时统计，可查询各接口的耗时直方图、排队数和调度线程利用率
+     *
+     * @return
+     */
+    public static RequestMetrics getRequestMetrics() {
+        return requestMetrics;
+    }
+
+    /**
+     * 将请求耗时统计导出到应用私有目录下的request-metrics.txt
+     *
+     * @return 导出的文件
+     */
+    public static File dumpMetrics() throws IOException {
+        File file = new File(getContext().getFilesDir(), "request-metrics.txt");
+        requestMetrics.dump(file);
+        LogUtil.d(Constant.LOG_TAG, requestMetrics.getReport());
+        return file;
     }
 
     /**
@@ -430,12 +866,28 @@ public class HttpRequestUtil {
      * @param listener 自定义Http请求回调
      * @return
      */
-    public static Response.Listener<String> getListener(final HttpListener listener) {
-        httpListener = listener;
+    public static Response.Listener<String> getListener(HttpListener listener) {
+        return getListener(null, listener);
+    }
+
+    /**
+     * Http请求成功回调类，回调只分发给当前请求自己的句柄和监听，不会串到其他并发请求
+     *
+     * @param call     当前请求的句柄，可为空
+     * @param listener 自定义Http请求回调
+     * @return
+     */
+    public static Response.Listener<String> getListener(final HttpCall<ResultDesc> call, final HttpListener listener) {
         Response.Listener<String> mListener = new Response.Listener<String>() {
             @Override
             public void onResponse(String s) {
-                httpListener.onSuccess(getReturnData(s));
+                ResultDesc resultDesc = getReturnData(s);
+                if (call != null && !call.onResponse(resultDesc)) {
+                    return;
+                }
+                if (listener != null) {
+                    listener.onSuccess(resultDesc);
+                }
             }
         };
         return mListener;
@@ -447,17 +899,88 @@ public class HttpRequestUtil {
      * @param listener 自定义Http请求回调
      * @return
      */
-    public static Response.ErrorListener getErrorListener(final HttpListener listener) {
-        httpListener = listener;
+    public static Response.ErrorListener getErrorListener(HttpListener listener) {
+        return getErrorListener(null, listener);
+    }
+
+    /**
+     * Http请求失败回调类，回调只分发给当前请求自己的句柄和监听，不会串到其他并发请求
+     *
+     * @param call     当前请求的句柄，可为空
+     * @param listener 自定义Http请求回调
+     * @return
+     */
+    public static Response.ErrorListener getErrorListener(final HttpCall<?> call, final HttpListener listener) {
+        Response.ErrorListener mErrorListener = new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError volleyError) {
+                if (call != null && !call.onFailure(volleyError)) {
+                    return;
+                }
+                if (listener != null) {
+                    listener.onFailure(volleyError);
+                }
+            }
+        };
+        return mErrorListener;
+    }
+
+    /**
+     * Http请求成功回调类，返回数据已解析为具体类型
+     *
+     * @param call     当前请求的句柄，可为空
+     * @param listener 自定义Http请求回调
+     * @return
+     */
+    public static <T> Response.Listener<ResultData<T>> getResultListener(final HttpCall<ResultData<T>> call, final ResultListener<T> listener) {
+        Response.Listener<ResultData<T>> mListener = new Response.Listener<ResultData<T>>() {
+            @Override
+            public void onResponse(ResultData<T> resultData) {
+                if (call != null && !call.onResponse(resultData)) {
+                    return;
+                }
+                if (listener != null) {
+                    listener.onSuccess(resultData);
+                }
+            }
+        };
+        return mListener;
+    }
+
+    /**
+     * Http请求失败回调类，返回数据已解析为具体类型
+     *
+     * @param call     当前请求的句柄，可为空
+     * @param listener 自定义Http请求回调
+     * @return
+     */
+    public static Response.ErrorListener getErrorListener(final HttpCall<?> call, final ResultListener<?> listener) {
         Response.ErrorListener mErrorListener = new Response.ErrorListener() {
             @Override
             public void onErrorResponse(VolleyError volleyError) {
-                httpListener.onFailure(volleyError);
+                if (call != null && !call.onFailure(volleyError)) {
+                    return;
+                }
+                if (listener != null) {
+                    listener.onFailure(volleyError);
+                }
             }
         };
         return mErrorListener;
     }
 
+    /**
+     * get 请求参数拼接
+     *
+     * @param url    访问服务器地址
+     * @param params 请求参数
+     * @return 拼接参数后的地址
+     */
+    public static String appendParams(String url, Map<String, String> params) {
+        // 参数排序并编码，相同参数得到相同的地址和缓存key
+        return RequestKey.appendQuery(url, params);
+    }
+
     /**
      * Gson数据解析
      *
@@ -471,38 +994,33 @@ public class HttpRequestUtil {
     }
 
     /**
-     * XML数据解析
+     * XML数据解析，在网络线程中执行
      *
      * @param xmlPullParser pull解析器
+     * @return 所有城市名称，以逗号分隔
      */
-    public static void getXmlPullParser(XmlPullParser xmlPullParser) {
-        try {
-            int eventType = xmlPullParser.getEventType();
-            StringBuilder sb = new StringBuilder();
-            boolean isFirst = true;
-            while (eventType != XmlPullParser.END_DOCUMENT) {
-                switch (eventType) {
-                    case XmlPullParser.START_TAG:
-                        String nodeName = xmlPullParser.getName();
-                        if ("city".equals(nodeName)) {
-                            String pName = xmlPullParser.getAttributeValue(0);
-                            if (isFirst) {
-                                sb.append(pName);
-                                isFirst = false;
-                            } else {
-                                sb.append("," + pName);
-                            }
+    public static String getXmlPullParser(XmlPullParser xmlPullParser) throws XmlPullParserException, IOException {
+        int eventType = xmlPullParser.getEventType();
+        StringBuilder sb = new StringBuilder();
+        boolean isFirst = true;
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            switch (eventType) {
+                case XmlPullParser.START_TAG:
+                    String nodeName = xmlPullParser.getName();
+                    if ("city".equals(nodeName)) {
+                        String pName = xmlPullParser.getAttributeValue(0);
+                        if (isFirst) {
+                            sb.append(pName);
+                            isFirst = false;
+                        } else {
+                            sb.append(',').append(pName);
                         }
-                        break;
-                }
-                eventType = xmlPullParser.next();
+                    }
+                    break;
             }
-            LogUtil.e(Constant.LOG_TAG, "XML 数据解析: " + sb.toString());
-        } catch (XmlPullParserException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+            eventType = xmlPullParser.next();
         }
+        return sb.toString();
     }
 
     /**
@@ -521,15 +1039,7 @@ public class HttpRequestUtil {
         }
 
         try {
-            JSONObject jsonObject = new JSONObject(result);
-            //返回码
-            int error_code = jsonObject.getInt("error_code");
-            //返回说明
-            String reason = jsonObject.getString("reason");
-            //返回数据
-            String resultData = jsonObject.getString("result");
-
-            resultDesc = dataRestructuring(error_code, reason, resultData);
+            resultDesc = ResultDescParser.parse(result);
         } catch (JSONException e) {
             resultDesc = dataRestructuring(-1, ExceptionCode(e), "");
         }
@@ -546,11 +1056,7 @@ public class HttpRequestUtil {
      * @return
      */
     public static ResultDesc dataRestructuring(int error_code, String reason, String resultData) {
-        ResultDesc resultDesc = new ResultDesc();
-        resultDesc.setError_code(error_code);
-        resultDesc.setReason(reason);
-        resultDesc.setResult(resultData);
-        return resultDesc;
+        return ResultDescParser.create(error_code, reason, resultData);
     }
 
     /**
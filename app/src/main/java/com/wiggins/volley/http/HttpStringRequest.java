@@ -0,0 +1,33 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Response;
+import com.android.volley.Response.ErrorListener;
+import com.android.volley.Response.Listener;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * @Description 自定义HttpStringRequest用于请求字符串数据，支持请求参数和缓存策略
+ * @Author 一花一世界
+ */
+public class HttpStringRequest extends BaseRequest<String> {
+
+    public HttpStringRequest(int method, String url, Listener<String> listener, ErrorListener errorListener) {
+        super(method, url, listener, errorListener);
+    }
+
+    public HttpStringRequest(String url, Listener<String> listener, ErrorListener errorListener) {
+        this(Method.GET, url, listener, errorListener);
+    }
+
+    @Override
+    protected Response<String> parseResponse(NetworkResponse response) {
+        try {
+            return Response.success(new String(response.data, GsonRequest.parseCharset(response.headers)), null);
+        } catch (UnsupportedEncodingException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.wiggins.volley.http;
+
+import java.util.Locale;
+
+/**
+ * @Description 固定分桶的耗时直方图，单位为微秒，记录次数、总和、最大值并按分桶估算百分位
+ * @Author 一花一世界
+ */
+public class LatencyHistogram {
+
+    // 各分桶的上限（微秒），最后一个分桶没有上限
+    private static final long[] BOUNDS = {
+            250, 500, 1000, 2000, 5000, 10000, 20000, 50000, 100000, 200000,
+            500000, 1000000, 2000000, 5000000, 10000000, 20000000, 60000000};
+
+    private final long[] mCounts = new long[BOUNDS.length + 1];
+    private long mCount;//记录次数
+    private long mSum;//耗时总和
+    private long mMax;//最大耗时
+
+    public synchronized void record(long micros) {
+        if (micros < 0) {
+            return;
+        }
+        int i = 0;
+        while (i < BOUNDS.length && micros > BOUNDS[i]) {
+            i++;
+        }
+        mCounts[i]++;
+        mCount++;
+        mSum += micros;
+        if (micros > mMax) {
+            mMax = micros;
+        }
+    }
+
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    /**
+     * @Description 平均耗时（微秒）
+     */
+    public synchronized long getMean() {
+        return mCount == 0 ? 0 : mSum / mCount;
+    }
+
+    /**
+     * @Description 最大耗时（微秒）
+     */
+    public synchronized long getMax() {
+        return mMax;
+    }
+
+    /**
+     * @Description 百分位耗时（微秒），取所在分桶的上限，不超过最大耗时；percentile取值0~100
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(percentile / 100 * mCount);
+        long seen = 0;
+        for (int i = 0; i < mCounts.length; i++) {
+            seen += mCounts[i];
+            if (seen >= target && mCounts[i] > 0) {
+                return i < BOUNDS.length ? Math.min(BOUNDS[i], mMax) : mMax;
+            }
+        }
+        return mMax;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "count=%d mean=%.1fms p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms",
+                mCount, getMean() / 1000.0, getPercentile(50) / 1000.0, getPercentile(90) / 1000.0,
+                getPercentile(99) / 1000.0, mMax / 1000.0);
+    }
+}
@@ -0,0 +1,180 @@
+package com.wiggins.volley.http;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @Description 按接口统计网络耗时，用于计算自适应的超时时间
+ * 每个接口记录耗时的指数加权平均值和平均偏差（与TCP计算重传超时的方式相同），以及最近若干次耗时用于计算百分位
+ * @Author 一花一世界
+ */
+public class LatencyTracker {
+
+    private static final int MAX_ENDPOINTS = 64;//最多统计的接口数量，超出后淘汰最久未使用的接口
+    private static final int SAMPLE_SIZE = 64;//每个接口保留的最近耗时数量
+
+    private static volatile LatencyTracker instance;
+
+    private final Map<String, Stats> mStats = new LinkedHashMap<String, Stats>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Stats> eldest) {
+            return size() > MAX_ENDPOINTS;
+        }
+    };//按访问顺序排列，访问时需要持有mStats的锁
+
+    public static LatencyTracker getInstance() {
+        if (instance == null) {
+            synchronized (LatencyTracker.class) {
+                if (instance == null) {
+                    instance = new LatencyTracker();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @Description 接口标识，去掉地址中的参数和锚点
+     */
+    public static String endpointOf(String url) {
+        int end = url.length();
+        int query = url.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        int fragment = url.indexOf('#');
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+        return end == url.length() ? url : url.substring(0, end);
+    }
+
+    /**
+     * @Description 主机标识(scheme://host[:port])，用于图片等每个地址都不同的请求，避免每个地址占用一个接口统计
+     */
+    public static String hostOf(String url) {
+        int scheme = url.indexOf("://");
+        if (scheme < 0) {
+            return endpointOf(url);
+        }
+        int start = scheme + 3;
+        int end = url.length();
+        for (int i = start; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        return url.substring(0, end);
+    }
+
+    /**
+     * @Description 记录一次成功请求的耗时
+     */
+    public void record(String endpoint, long latencyMs) {
+        getStats(endpoint).record(latencyMs);
+    }
+
+    /**
+     * @Description 记录一次超时，下次的超时时间按退避加倍
+     */
+    public void recordTimeout(String endpoint) {
+        getStats(endpoint).recordTimeout();
+    }
+
+    /**
+     * @Description 接口的建议超时时间，没有统计数据时返回defaultMs，结果限制在[minMs, maxMs]之间
+     */
+    public int getTimeoutMs(String endpoint, int defaultMs, int minMs, int maxMs) {
+        Stats stats = peekStats(endpoint);
+        long timeout = stats == null ? defaultMs : stats.getTimeoutMs(defaultMs);
+        return (int) Math.max(minMs, Math.min(maxMs, timeout));
+    }
+
+    /**
+     * @Description 接口最近耗时的百分位，percentile取值0~100，没有统计数据时返回-1
+     */
+    public long getPercentile(String endpoint, double percentile) {
+        Stats stats = peekStats(endpoint);
+        return stats == null ? -1 : stats.getPercentile(percentile);
+    }
+
+    /**
+     * @Description 接口耗时的指数加权平均值，没有统计数据时返回-1
+     */
+    public long getAverage(String endpoint) {
+        Stats stats = peekStats(endpoint);
+        return stats == null ? -1 : stats.getAverage();
+    }
+
+    private Stats peekStats(String endpoint) {
+        synchronized (mStats) {
+            return mStats.get(endpoint);
+        }
+    }
+
+    private Stats getStats(String endpoint) {
+        synchronized (mStats) {
+            Stats stats = mStats.get(endpoint);
+            if (stats == null) {
+                // 超出MAX_ENDPOINTS时只淘汰最久未使用的一个接口，常用接口的统计不受影响
+                stats = new Stats();
+                mStats.put(endpoint, stats);
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * @Description 单个接口的耗时统计
+     */
+    private static class Stats {
+
+        private double mAverage = -1;//耗时的指数加权平均值（权重1/8）
+        private double mDeviation;//耗时平均偏差的指数加权平均值（权重1/4）
+        private int mTimeouts;//连续超时次数
+        private final long[] mSamples = new long[SAMPLE_SIZE];//最近的耗时，循环写入
+        private int mCount;//已记录的耗时数量
+
+        synchronized void record(long latencyMs) {
+            if (mAverage < 0) {
+                mAverage = latencyMs;
+                mDeviation = latencyMs / 2.0;
+            } else {
+                mDeviation += (Math.abs(latencyMs - mAverage) - mDeviation) / 4;
+                mAverage += (latencyMs - mAverage) / 8;
+            }
+            mTimeouts = 0;
+            mSamples[mCount % SAMPLE_SIZE] = latencyMs;
+            mCount++;
+        }
+
+        synchronized void recordTimeout() {
+            if (mTimeouts < 4) {
+                mTimeouts++;
+            }
+        }
+
+        synchronized long getTimeoutMs(int defaultMs) {
+            long timeout = mAverage < 0 ? defaultMs : (long) (mAverage + 4 * mDeviation);
+            return timeout << mTimeouts;
+        }
+
+        synchronized long getAverage() {
+            return mAverage < 0 ? -1 : (long) mAverage;
+        }
+
+        synchronized long getPercentile(double percentile) {
+            int size = Math.min(mCount, SAMPLE_SIZE);
+            if (size == 0) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(mSamples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+}
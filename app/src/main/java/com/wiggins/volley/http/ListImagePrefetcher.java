@@ -0,0 +1,123 @@
+package com.wiggins.volley.http;
+
+import android.view.View;
+import android.widget.AbsListView;
+import android.widget.ImageView;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @Description 列表图片预加载，作为ListView的OnScrollListener使用
+ * 按滚动方向预加载可见区域之后（向上滚动时为之前）的若干行图片，行数与一屏的可见行数相同，最多maxRows行；
+ * 目标尺寸取自可见行中的ImageView，与getView中加载时的内存缓存key一致。
+ * 预加载请求的优先级低于正在显示的图片，滚出预加载范围的行取消预加载
+ * @Author 一花一世界
+ */
+public class ListImagePrefetcher implements AbsListView.OnScrollListener {
+
+    private final SizedImageLoader mImageLoader;
+    private final UrlProvider mUrlProvider;
+    private final int mImageViewId;//行中显示图片的ImageView的id
+    private final int mMaxRows;//最多预加载的行数
+    private final Map<String, SizedImageLoader.ImageContainer> mPrefetches = new HashMap<>();//预加载中的图片，key为图片地址
+    private int mFirstVisibleItem = -1;
+    private int mVisibleItemCount;
+    private int mTotalItemCount;
+    private boolean mScrollingDown = true;//滚动方向，初始按向下预加载
+
+    /**
+     * @Description 按位置返回图片地址，通常由Adapter实现
+     */
+    public interface UrlProvider {
+        /**
+         * @return 图片地址，该行没有图片时返回null
+         */
+        String getImageUrl(int position);
+    }
+
+    /**
+     * @param imageLoader 加载可见行图片使用的SizedImageLoader
+     * @param urlProvider 按位置返回图片地址
+     * @param imageViewId 行中显示图片的ImageView的id
+     * @param maxRows     最多预加载的行数
+     */
+    public ListImagePrefetcher(SizedImageLoader imageLoader, UrlProvider urlProvider, int imageViewId, int maxRows) {
+        mImageLoader = imageLoader;
+        mUrlProvider = urlProvider;
+        mImageViewId = imageViewId;
+        mMaxRows = maxRows;
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        if (visibleItemCount == 0 || (firstVisibleItem == mFirstVisibleItem
+                && visibleItemCount == mVisibleItemCount && totalItemCount == mTotalItemCount)) {
+            return;
+        }
+        if (mFirstVisibleItem >= 0 && firstVisibleItem != mFirstVisibleItem) {
+            mScrollingDown = firstVisibleItem > mFirstVisibleItem;
+        }
+        mFirstVisibleItem = firstVisibleItem;
+        mVisibleItemCount = visibleItemCount;
+        mTotalItemCount = totalItemCount;
+
+        View child = view.getChildAt(0);
+        View imageView = child == null ? null : child.findViewById(mImageViewId);
+        if (!(imageView instanceof ImageView)) {
+            return;
+        }
+        ImageView template = (ImageView) imageView;
+        int maxWidth = SizedImageLoader.getTargetWidth(template);
+        int maxHeight = SizedImageLoader.getTargetHeight(template);
+
+        int rows = Math.min(visibleItemCount, mMaxRows);
+        Set<String> wanted = new HashSet<>();
+        for (int i = 0; i < rows; i++) {
+            // 从离可见区域最近的行开始
+            int position = mScrollingDown ? firstVisibleItem + visibleItemCount + i : firstVisibleItem - 1 - i;
+            if (position < 0 || position >= totalItemCount) {
+                break;
+            }
+            String url = mUrlProvider.getImageUrl(position);
+            if (url == null || url.length() == 0) {
+                continue;
+            }
+            wanted.add(url);
+            if (!mPrefetches.containsKey(url)) {
+                SizedImageLoader.ImageContainer container = mImageLoader.prefetch(url, maxWidth, maxHeight, template.getScaleType());
+                if (container != null) {
+                    mPrefetches.put(url, container);
+                }
+            }
+        }
+
+        // 取消滚出预加载范围的行，已开始显示的行有自己的订阅，请求不会被取消
+        Iterator<Map.Entry<String, SizedImageLoader.ImageContainer>> iterator = mPrefetches.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, SizedImageLoader.ImageContainer> entry = iterator.next();
+            if (!wanted.contains(entry.getKey())) {
+                entry.getValue().cancelRequest();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @Description 取消所有预加载，在页面销毁时调用
+     */
+    public void cancelAll() {
+        for (SizedImageLoader.ImageContainer container : mPrefetches.values()) {
+            container.cancelRequest();
+        }
+        mPrefetches.clear();
+        mFirstVisibleItem = -1;
+    }
+}
@@ -0,0 +1,53 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.Cache;
+
+/**
+ * @Description 记录读写耗时的Cache，包装实际的Cache，耗时对应到调度线程当前处理的请求
+ * @Author 一花一世界
+ */
+public class MeteredCache implements Cache {
+
+    private final Cache mCache;//实际的缓存
+    private final RequestMetrics mMetrics;
+
+    public MeteredCache(Cache cache, RequestMetrics metrics) {
+        mCache = cache;
+        mMetrics = metrics;
+    }
+
+    @Override
+    public Entry get(String key) {
+        long start = System.nanoTime();
+        Entry entry = mCache.get(key);
+        mMetrics.onCacheGet(key, start, System.nanoTime());
+        return entry;
+    }
+
+    @Override
+    public void put(String key, Entry entry) {
+        long start = System.nanoTime();
+        mCache.put(key, entry);
+        mMetrics.onCachePut(start, System.nanoTime());
+    }
+
+    @Override
+    public void initialize() {
+        mCache.initialize();
+    }
+
+    @Override
+    public void invalidate(String key, boolean fullExpire) {
+        mCache.invalidate(key, fullExpire);
+    }
+
+    @Override
+    public void remove(String key) {
+        mCache.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        mCache.clear();
+    }
+}
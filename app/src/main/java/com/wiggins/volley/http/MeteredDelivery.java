@@ -0,0 +1,111 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.ExecutorDelivery;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.ResponseDelivery;
+import com.android.volley.VolleyError;
+
+import java.util.concurrent.Executor;
+
+/**
+ * @Description 记录分发耗时的ResponseDelivery
+ * 内部使用ExecutorDelivery，在提交到分发线程时记录请求的时间点，并包装提交的任务以记录等待和执行回调的耗时
+ * @Author 一花一世界
+ */
+public class MeteredDelivery implements ResponseDelivery {
+
+    private final RequestMetrics mMetrics;
+    private final ExecutorDelivery mDelivery;
+    private final ThreadLocal<Posting> mPosting = new ThreadLocal<>();//当前线程正在提交的请求
+
+    /**
+     * @Description 正在提交的请求及其时间点
+     */
+    private static class Posting {
+
+        final Request<?> mRequest;
+        final RequestMetrics.Timeline mTimeline;
+        final boolean mIntermediate;
+
+        Posting(Request<?> request, RequestMetrics.Timeline timeline, boolean intermediate) {
+            mRequest = request;
+            mTimeline = timeline;
+            mIntermediate = intermediate;
+        }
+    }
+
+    /**
+     * @param metrics  耗时统计
+     * @param executor 分发线程，通常为主线程Handler
+     */
+    public MeteredDelivery(RequestMetrics metrics, final Executor executor) {
+        mMetrics = metrics;
+        mDelivery = new ExecutorDelivery(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                // ExecutorDelivery在postResponse/postError中同步提交任务，此时可以取到当前提交的请求
+                Posting posting = mPosting.get();
+                executor.execute(posting == null || posting.mTimeline == null ? command : new MeteredRunnable(posting, command));
+            }
+        });
+    }
+
+    @Override
+    public void postResponse(Request<?> request, Response<?> response) {
+        post(request, response.intermediate);
+        try {
+            mDelivery.postResponse(request, response);
+        } finally {
+            mPosting.remove();
+        }
+    }
+
+    @Override
+    public void postResponse(Request<?> request, Response<?> response, Runnable runnable) {
+        post(request, response.intermediate);
+        try {
+            mDelivery.postResponse(request, response, runnable);
+        } finally {
+            mPosting.remove();
+        }
+    }
+
+    @Override
+    public void postError(Request<?> request, VolleyError error) {
+        post(request, false);
+        try {
+            mDelivery.postError(request, error);
+        } finally {
+            mPosting.remove();
+        }
+    }
+
+    private void post(Request<?> request, boolean intermediate) {
+        mPosting.set(new Posting(request, mMetrics.onPost(request), intermediate));
+    }
+
+    /**
+     * @Description 记录分发线程中执行回调的开始和结束时间
+     */
+    private class MeteredRunnable implements Runnable {
+
+        private final Posting mPosting;
+        private final Runnable mCommand;
+
+        MeteredRunnable(Posting posting, Runnable command) {
+            mPosting = posting;
+            mCommand = command;
+        }
+
+        @Override
+        public void run() {
+            mMetrics.onDeliveryStart(mPosting.mTimeline);
+            try {
+                mCommand.run();
+            } finally {
+                mMetrics.onDeliveryEnd(mPosting.mRequest, mPosting.mTimeline, mPosting.mIntermediate);
+            }
+        }
+    }
+}
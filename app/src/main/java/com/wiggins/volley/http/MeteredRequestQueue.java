@@ -0,0 +1,46 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.Cache;
+import com.android.volley.Network;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.ResponseDelivery;
+
+/**
+ * @Description 记录请求加入队列时间的RequestQueue，由RequestQueueBuilder在设置了RequestMetrics时创建
+ * 按标签取消请求后立即清理已取消请求的统计，避免统计中的请求继续持有回调
+ * @Author 一花一世界
+ */
+public class MeteredRequestQueue extends RequestQueue {
+
+    private final RequestMetrics mMetrics;
+
+    public MeteredRequestQueue(Cache cache, Network network, int threadPoolSize, ResponseDelivery delivery, RequestMetrics metrics) {
+        super(cache, network, threadPoolSize, delivery);
+        mMetrics = metrics;
+        metrics.onQueueCreated(threadPoolSize);
+    }
+
+    public RequestMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public Request add(Request request) {
+        mMetrics.onEnqueue(request);
+        return super.add(request);
+    }
+
+    @Override
+    public void cancelAll(RequestFilter filter) {
+        super.cancelAll(filter);
+        mMetrics.onCancel();
+    }
+
+    @Override
+    public void cancelAll(Object tag) {
+        super.cancelAll(tag);
+        mMetrics.onCancel();
+    }
+}
@@ -0,0 +1,190 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.Request;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * @Description 请求的规范化标识：参数按名称排序并进行百分号编码，相同参数无论传入顺序如何都得到相同的地址、请求体和缓存key，
+ * 缓存、相同请求合并和统计共用同一个key
+ * @Author 一花一世界
+ */
+public class RequestKey {
+
+    private static final String DEFAULT_ENCODING = "UTF-8";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final int mMethod;//请求方式
+    private final String mUrl;//拼接参数后的地址
+    private final String mBody;//编码后的请求体，没有请求体时为null
+    private final String mCacheKey;//缓存key
+
+    private RequestKey(int method, String url, String body) {
+        mMethod = method;
+        mUrl = url;
+        mBody = body;
+        mCacheKey = buildCacheKey(method, url, body);
+    }
+
+    public int getMethod() {
+        return mMethod;
+    }
+
+    public String getUrl() {
+        return mUrl;
+    }
+
+    public String getBody() {
+        return mBody;
+    }
+
+    /**
+     * @Description 缓存key，GET请求为地址，POST请求为地址加请求体，其他请求方式再加上请求方式区分
+     */
+    public String getCacheKey() {
+        return mCacheKey;
+    }
+
+    @Override
+    public String toString() {
+        return mCacheKey;
+    }
+
+    private static String buildCacheKey(int method, String url, String body) {
+        if (method == Request.Method.GET && body == null) {
+            return url;
+        }
+        StringBuilder sb = new StringBuilder(url.length() + (body == null ? 0 : body.length()) + 4);
+        if (method != Request.Method.GET && method != Request.Method.POST) {
+            sb.append(method).append(' ');
+        }
+        sb.append(url);
+        if (body != null) {
+            sb.append('#').append(body);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @Description 拼接排序并编码后的请求参数，地址中已有参数时追加在后面
+     */
+    public static String appendQuery(String url, Map<String, String> params) {
+        if (params == null || params.isEmpty()) {
+            return url;
+        }
+        StringBuilder sb = new StringBuilder(estimateLength(url, params));
+        sb.append(url).append(url.indexOf('?') < 0 ? '?' : '&');
+        appendParams(sb, params, Charset.forName(DEFAULT_ENCODING));
+        return sb.toString();
+    }
+
+    /**
+     * @Description 排序并编码后的请求参数，用作application/x-www-form-urlencoded请求体
+     */
+    public static String encodeParams(Map<String, String> params, String encoding) {
+        if (params == null || params.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(estimateLength("", params));
+        appendParams(sb, params, Charset.forName(encoding == null ? DEFAULT_ENCODING : encoding));
+        return sb.toString();
+    }
+
+    private static int estimateLength(String url, Map<String, String> params) {
+        int length = url.length() + 1;
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            String value = entry.getValue();
+            length += entry.getKey().length() + (value == null ? 0 : value.length()) + 2;
+        }
+        // 预留部分字符编码后的长度
+        return length + (length >> 1);
+    }
+
+    private static void appendParams(StringBuilder sb, Map<String, String> params, Charset charset) {
+        String[] keys = params.keySet().toArray(new String[params.size()]);
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                sb.append('&');
+            }
+            percentEncode(sb, keys[i], charset);
+            sb.append('=');
+            String value = params.get(keys[i]);
+            if (value != null) {
+                percentEncode(sb, value, charset);
+            }
+        }
+    }
+
+    /**
+     * @Description 按RFC 3986编码，非保留字符原样写入，其余字符按指定字符集编码为%XX，直接写入sb避免创建中间字符串
+     */
+    static void percentEncode(StringBuilder sb, String s, Charset charset) {
+        int length = s.length();
+        int i = 0;
+        while (i < length) {
+            char c = s.charAt(i);
+            if (isUnreserved(c)) {
+                sb.append(c);
+                i++;
+                continue;
+            }
+            // 连续的需要编码的字符一起转换，保证代理对等多字符组合被正确编码
+            int start = i;
+            while (i < length && !isUnreserved(s.charAt(i))) {
+                i++;
+            }
+            byte[] bytes = s.substring(start, i).getBytes(charset);
+            for (byte b : bytes) {
+                sb.append('%').append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+            }
+        }
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    /**
+     * @Description 构建请求标识，GET请求的参数拼接到地址中，其他请求方式的参数编码为请求体
+     */
+    public static class Builder {
+
+        private final String mUrl;
+        private int mMethod = Request.Method.GET;
+        private Map<String, String> mParams;
+        private String mEncoding = DEFAULT_ENCODING;
+
+        public Builder(String url) {
+            if (url == null) {
+                throw new IllegalArgumentException("url == null");
+            }
+            mUrl = url;
+        }
+
+        public Builder method(int method) {
+            mMethod = method;
+            return this;
+        }
+
+        public Builder params(Map<String, String> params) {
+            mParams = params;
+            return this;
+        }
+
+        public Builder encoding(String encoding) {
+            mEncoding = encoding;
+            return this;
+        }
+
+        public RequestKey build() {
+            if (mMethod == Request.Method.GET || mMethod == Request.Method.DELETE) {
+                return new RequestKey(mMethod, appendQuery(mUrl, mParams), null);
+            }
+            return new RequestKey(mMethod, mUrl, encodeParams(mParams, mEncoding));
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.Request;
+import com.android.volley.toolbox.ImageRequest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Description 请求各阶段耗时统计
+ * 通过RequestQueueBuilder.metrics()接入，由MeteredRequestQueue、MeteredCache、DispatcherNetwork和MeteredDelivery
+ * 记录每个请求在排队、缓存分拣、网络、解析、写缓存、等待主线程和回调各阶段的时间点，请求完成后按接口和标签汇总到直方图；
+ * 同时统计排队中的请求数和网络调度线程的利用率，可以在进程内查询，也可以导出到文件
+ * @Author 一花一世界
+ */
+public class RequestMetrics {
+
+    public enum Phase {
+        QUEUE_WAIT,//加入队列到调度线程开始处理
+        CACHE,//缓存分拣（读取缓存）
+        NETWORK,//网络请求，包括重试
+        PARSE,//解析返回数据
+        CACHE_WRITE,//写入缓存
+        DELIVERY_WAIT,//等待主线程分发
+        DELIVERY,//主线程中执行回调
+        TOTAL//加入队列到回调完成
+    }
+
+    private static final int SWEEP_THRESHOLD = 256;//进行中的请求超过该数量时清理长时间未完成的请求
+    private static final long STALE_NANOS = 5 * 60 * 1000000000L;//超过该时间未完成的请求在清理时丢弃
+    private static final int MAX_HISTOGRAMS = 512;//最多保存的直方图数量，超出后新的接口汇总到OTHER_ENDPOINT
+    private static final String NO_TAG = "-";
+    private static final String OTHER_ENDPOINT = "other";
+
+    private final ConcurrentMap<Request<?>, Timeline> mTimelines = new ConcurrentHashMap<>();//进行中的请求
+    private final Map<String, Deque<Timeline>> mAwaitingCache = new HashMap<>();//等待缓存分拣的请求，key为缓存key
+    private final ThreadLocal<Timeline> mCurrent = new ThreadLocal<>();//调度线程当前处理的请求
+    private final ConcurrentMap<String, LatencyHistogram> mHistograms = new ConcurrentHashMap<>();//key为接口、标签和阶段
+    private final AtomicInteger mDispatchers = new AtomicInteger();//网络调度线程总数
+    private final AtomicInteger mBusyDispatchers = new AtomicInteger();//正在执行网络请求的调度线程数
+    private final AtomicLong mBusyNanos = new AtomicLong();//调度线程执行网络请求的累计时间
+    private final AtomicLong mCompleted = new AtomicLong();//已完成的请求数
+    private final AtomicLong mCanceled = new AtomicLong();//已取消的请求数
+    private final long mStartNanos = System.nanoTime();
+
+    /**
+     * @Description 单个请求的各阶段时间点（System.nanoTime），0表示未经过该阶段
+     */
+    static class Timeline {
+
+        final String mEndpoint;
+        final String mTag;
+        final long mEnqueue;
+        volatile long mCacheStart;
+        volatile long mCacheEnd;
+        volatile long mNetworkStart;
+        volatile long mNetworkEnd;
+        volatile long mCachePutStart;
+        volatile long mCachePutEnd;
+        volatile long mPost;
+        volatile long mDeliveryStart;
+        volatile long mDeliveryEnd;
+
+        Timeline(String endpoint, String tag, long enqueue) {
+            mEndpoint = endpoint;
+            mTag = tag;
+            mEnqueue = enqueue;
+        }
+    }
+
+    // ---------------- 各组件调用的记录方法 ----------------
+
+    void onQueueCreated(int threadPoolSize) {
+        mDispatchers.addAndGet(threadPoolSize);
+    }
+
+    void onEnqueue(Request<?> request) {
+        // 请求持有回调，回调通常持有Activity，已取消的请求不能等到超过阈值才清理
+        sweep(mTimelines.size() > SWEEP_THRESHOLD);
+        Timeline timeline = new Timeline(endpointOf(request), tagOf(request.getTag()), System.nanoTime());
+        mTimelines.put(request, timeline);
+        if (request.shouldCache()) {
+            synchronized (mAwaitingCache) {
+                String key = request.getCacheKey();
+                Deque<Timeline> deque = mAwaitingCache.get(key);
+                if (deque == null) {
+                    deque = new ArrayDeque<>(2);
+                    mAwaitingCache.put(key, deque);
+                }
+                deque.add(timeline);
+            }
+        }
+    }
+
+    /**
+     * @Description 缓存调度线程读取缓存，Volley只传入缓存key，按key对应到最早加入队列的请求
+     */
+    void onCacheGet(String key, long start, long end) {
+        Timeline timeline;
+        synchronized (mAwaitingCache) {
+            Deque<Timeline> deque = mAwaitingCache.get(key);
+            timeline = deque == null ? null : deque.poll();
+            if (deque != null && deque.isEmpty()) {
+                mAwaitingCache.remove(key);
+            }
+        }
+        if (timeline != null) {
+            timeline.mCacheStart = start;
+            timeline.mCacheEnd = end;
+        }
+        mCurrent.set(timeline);
+    }
+
+    void onNetworkStart(Request<?> request) {
+        Timeline timeline = mTimelines.get(request);
+        mCurrent.set(timeline);
+        if (timeline != null) {
+            timeline.mNetworkStart = System.nanoTime();
+            timeline.mNetworkEnd = 0;
+            timeline.mCachePutStart = 0;
+            timeline.mCachePutEnd = 0;
+        }
+        mBusyDispatchers.incrementAndGet();
+    }
+
+    void onNetworkEnd(Request<?> request) {
+        long now = System.nanoTime();
+        mBusyDispatchers.decrementAndGet();
+        Timeline timeline = mTimelines.get(request);
+        if (timeline != null) {
+            timeline.mNetworkEnd = now;
+            mBusyNanos.addAndGet(now - timeline.mNetworkStart);
+        }
+    }
+
+    /**
+     * @Description 网络调度线程写入缓存，对应到该线程当前处理的请求
+     */
+    void onCachePut(long start, long end) {
+        Timeline timeline = mCurrent.get();
+        if (timeline != null) {
+            timeline.mCachePutStart = start;
+            timeline.mCachePutEnd = end;
+        }
+    }
+
+    /**
+     * @Description 队列按标签或条件取消请求后调用，立即清理已取消的请求
+     */
+    void onCancel() {
+        sweep(false);
+    }
+
+    /**
+     * @Description 请求不经过分发就结束，例如已分发过缓存数据的后台刷新返回304
+     */
+    void onFinishedWithoutDelivery(Request<?> request) {
+        Timeline timeline = mTimelines.remove(request);
+        if (timeline != null) {
+            removeAwaitingCache(request, timeline);
+        }
+    }
+
+    Timeline onPost(Request<?> request) {
+        mCurrent.remove();
+        Timeline timeline = mTimelines.get(request);
+        if (timeline != null) {
+            timeline.mPost = System.nanoTime();
+        }
+        return timeline;
+    }
+
+    void onDeliveryStart(Timeline timeline) {
+        timeline.mDeliveryStart = System.nanoTime();
+    }
+
+    /**
+     * @Description 主线程回调完成，最终结果回调完成后汇总该请求的各阶段耗时
+     */
+    void onDeliveryEnd(Request<?> request, Timeline timeline, boolean intermediate) {
+        timeline.mDeliveryEnd = System.nanoTime();
+        if (intermediate) {
+            return;
+        }
+        if (mTimelines.remove(request) == null) {
+            return;
+        }
+        if (request.isCanceled()) {
+            mCanceled.incrementAndGet();
+            return;
+        }
+        mCompleted.incrementAndGet();
+        aggregate(timeline);
+    }
+
+    private void aggregate(Timeline t) {
+        long firstTouch = t.mCacheStart != 0 ? t.mCacheStart : t.mNetworkStart;
+        record(t, Phase.QUEUE_WAIT, t.mEnqueue, firstTouch);
+        record(t, Phase.CACHE, t.mCacheStart, t.mCacheEnd);
+        record(t, Phase.NETWORK, t.mNetworkStart, t.mNetworkEnd);
+        if (t.mNetworkEnd != 0) {
+            record(t, Phase.PARSE, t.mNetworkEnd, t.mCachePutStart != 0 ? t.mCachePutStart : t.mPost);
+        } else {
+            record(t, Phase.PARSE, t.mCacheEnd, t.mPost);
+        }
+        record(t, Phase.CACHE_WRITE, t.mCachePutStart, t.mCachePutEnd);
+        record(t, Phase.DELIVERY_WAIT, t.mPost, t.mDeliveryStart);
+        record(t, Phase.DELIVERY, t.mDeliveryStart, t.mDeliveryEnd);
+        record(t, Phase.TOTAL, t.mEnqueue, t.mDeliveryEnd);
+    }
+
+    private void record(Timeline t, Phase phase, long start, long end) {
+        if (start == 0 || end == 0 || end < start) {
+            return;
+        }
+        getHistogram(t.mEndpoint, t.mTag, phase, true).record((end - start) / 1000);
+    }
+
+    /**
+     * @Description 清理未经过分发就结束的请求：分发前被取消的请求，以及长时间未完成的请求
+     *
+     * @param includeStale 是否同时清理超过STALE_NANOS未完成的请求
+     */
+    private void sweep(boolean includeStale) {
+        long expired = includeStale ? System.nanoTime() - STALE_NANOS : Long.MIN_VALUE;
+        Iterator<Map.Entry<Request<?>, Timeline>> iterator = mTimelines.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Request<?>, Timeline> entry = iterator.next();
+            boolean canceled = entry.getKey().isCanceled();
+            if (canceled || entry.getValue().mEnqueue < expired) {
+                iterator.remove();
+                if (canceled) {
+                    mCanceled.incrementAndGet();
+                }
+                removeAwaitingCache(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void removeAwaitingCache(Request<?> request, Timeline timeline) {
+        if (!request.shouldCache()) {
+            return;
+        }
+        synchronized (mAwaitingCache) {
+            Deque<Timeline> deque = mAwaitingCache.get(request.getCacheKey());
+            if (deque != null && deque.remove(timeline) && deque.isEmpty()) {
+                mAwaitingCache.remove(request.getCacheKey());
+            }
+        }
+    }
+
+    /**
+     * @Description 请求的统计接口，与LatencyTracker使用同一套接口标识：使用AdaptiveRetryPolicy的请求取其接口，
+     * 图片请求按主机统计，其他请求去掉地址中的参数
+     */
+    static String endpointOf(Request<?> request) {
+        if (request.getRetryPolicy() instanceof AdaptiveRetryPolicy) {
+            return ((AdaptiveRetryPolicy) request.getRetryPolicy()).getEndpoint();
+        }
+        if (request instanceof ImageRequest) {
+            return LatencyTracker.hostOf(request.getUrl());
+        }
+        return LatencyTracker.endpointOf(request.getUrl());
+    }
+
+    private static String tagOf(Object tag) {
+        if (tag == null) {
+            return NO_TAG;
+        }
+        return tag instanceof String ? (String) tag : tag.getClass().getSimpleName();
+    }
+
+    private static String keyOf(String endpoint, String tag, Phase phase) {
+        return endpoint + '|' + tag + '|' + phase;
+    }
+
+    private LatencyHistogram getHistogram(String endpoint, String tag, Phase phase, boolean create) {
+        String key = keyOf(endpoint, tag, phase);
+        LatencyHistogram histogram = mHistograms.get(key);
+        if (histogram == null && create && mHistograms.size() >= MAX_HISTOGRAMS) {
+            // 直方图在进程内一直保留，接口过多时不再新建，避免内存随访问的地址无限增长
+            key = keyOf(OTHER_ENDPOINT, tag, phase);
+            histogram = mHistograms.get(key);
+        }
+        if (histogram == null && create) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = mHistograms.putIfAbsent(key, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    // ---------------- 查询 ----------------
+
+    /**
+     * @Description 指定接口、标签和阶段的耗时直方图，没有数据时返回null
+     *
+     * @param url 请求地址或接口地址，参数部分会被忽略；图片请求按主机统计，传入scheme://host
+     * @param tag 请求标签，可为空
+     */
+    public LatencyHistogram getHistogram(String url, Object tag, Phase phase) {
+        return getHistogram(LatencyTracker.endpointOf(url), tagOf(tag), phase, false);
+    }
+
+    /**
+     * @Description 进行中的请求数（已加入队列但未完成回调）
+     */
+    public int getPendingCount() {
+        return mTimelines.size();
+    }
+
+    /**
+     * @Description 排队中的请求数（已加入队列但调度线程还未开始处理）
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Timeline timeline : mTimelines.values()) {
+            if (timeline.mCacheStart == 0 && timeline.mNetworkStart == 0) {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * @Description 正在执行网络请求的调度线程数
+     */
+    public int getBusyDispatchers() {
+        return mBusyDispatchers.get();
+    }
+
+    /**
+     * @Description 网络调度线程自统计开始以来的平均利用率，取值0~1
+     */
+    public double getDispatcherUtilization() {
+        int dispatchers = mDispatchers.get();
+        long elapsed = System.nanoTime() - mStartNanos;
+        if (dispatchers == 0 || elapsed <= 0) {
+            return 0;
+        }
+        return Math.min(1.0, (double) mBusyNanos.get() / ((double) elapsed * dispatchers));
+    }
+
+    public long getCompletedCount() {
+        return mCompleted.get();
+    }
+
+    public long getCanceledCount() {
+        return mCanceled.get();
+    }
+
+    /**
+     * @Description 文本格式的统计报告，按接口、标签和阶段排列
+     */
+    public String getReport() {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append(String.format(Locale.US, "completed=%d canceled=%d pending=%d queueDepth=%d busyDispatchers=%d/%d utilization=%.1f%%\n",
+                getCompletedCount(), getCanceledCount(), getPendingCount(), getQueueDepth(),
+                getBusyDispatchers(), mDispatchers.get(), getDispatcherUtilization() * 100));
+        Set<String> prefixes = new TreeSet<>();
+        for (String key : mHistograms.keySet()) {
+            prefixes.add(key.substring(0, key.lastIndexOf('|')));
+        }
+        for (String prefix : prefixes) {
+            sb.append(prefix).append('\n');
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram histogram = mHistograms.get(prefix + '|' + phase);
+                if (histogram != null) {
+                    sb.append("  ").append(phase).append(' ').append(histogram).append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @Description 将统计报告写入文件
+     */
+    public void dump(File file) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(getReport());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @Description 清空已汇总的直方图，进行中的请求不受影响
+     */
+    public void reset() {
+        mHistograms.clear();
+        mCompleted.set(0);
+        mCanceled.set(0);
+    }
+}
@@ -0,0 +1,127 @@
+package com.wiggins.volley.http;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @Description 接口请求预加载队列
+ * 预加载任务按加入顺序执行，同时进行的任务数不超过上限；接口队列或图片队列中有其他请求排队或执行网络请求时暂停，
+ * 这些请求结束后继续，避免预加载与正在显示的页面争用网络调度线程和带宽。所有方法都需要在主线程中调用
+ * @Author 一花一世界
+ */
+public class RequestPrefetcher {
+
+    private static final long PAUSE_CHECK_INTERVAL_MS = 300;//暂停时检查其他请求是否结束的间隔
+
+    private final int mMaxConcurrent;//同时进行的预加载任务数上限
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Deque<String> mPending = new ArrayDeque<>();//等待执行的任务key
+    private final Map<String, Task> mTasks = new HashMap<>();//等待执行的任务
+    private final Map<String, HttpCall<?>> mRunning = new HashMap<>();//进行中的任务
+    private final Set<String> mFinished = new HashSet<>();//已成功的任务，不再重复预加载，cancelAll()时清空
+    private boolean mResumeScheduled;
+    private final Runnable mResume = new Runnable() {
+        @Override
+        public void run() {
+            mResumeScheduled = false;
+            schedule();
+        }
+    };
+
+    /**
+     * @Description 预加载任务
+     */
+    public interface Task {
+        /**
+         * @Description 发起预加载请求，请求完成（成功或失败）后调用done.onDone()，请求被取消时不需要调用
+         *
+         * @param tag  预加载请求使用的标签
+         * @param done 完成回调，在主线程中调用
+         */
+        HttpCall<?> start(Object tag, Callback done);
+    }
+
+    /**
+     * @Description 预加载任务完成回调
+     */
+    public interface Callback {
+        /**
+         * @param success 是否成功，失败的任务之后可以再次预加载
+         */
+        void onDone(boolean success);
+    }
+
+    /**
+     * @param maxConcurrent 同时进行的预加载任务数上限
+     */
+    public RequestPrefetcher(int maxConcurrent) {
+        mMaxConcurrent = maxConcurrent;
+    }
+
+    /**
+     * @Description 添加预加载任务，相同key的任务已等待、进行中或已成功时忽略
+     */
+    public void prefetch(String key, Task task) {
+        if (mTasks.containsKey(key) || mRunning.containsKey(key) || mFinished.contains(key)) {
+            return;
+        }
+        mPending.add(key);
+        mTasks.put(key, task);
+        schedule();
+    }
+
+    /**
+     * @Description 取消所有等待执行和进行中的预加载，并清空已成功的记录，在列表重新加载时调用
+     */
+    public void cancelAll() {
+        mHandler.removeCallbacks(mResume);
+        mResumeScheduled = false;
+        mPending.clear();
+        mTasks.clear();
+        for (HttpCall<?> call : mRunning.values()) {
+            call.cancel();
+        }
+        mRunning.clear();
+        mFinished.clear();
+    }
+
+    private void schedule() {
+        while (!mPending.isEmpty() && mRunning.size() < mMaxConcurrent) {
+            // 两个队列中排队和执行中的请求数最多包括进行中的预加载自身，多出的部分是其他请求
+            if (HttpRequestUtil.getActiveRequestCount() > mRunning.size()) {
+                if (!mResumeScheduled) {
+                    mResumeScheduled = true;
+                    mHandler.postDelayed(mResume, PAUSE_CHECK_INTERVAL_MS);
+                }
+                return;
+            }
+            final String key = mPending.poll();
+            Task task = mTasks.remove(key);
+            final boolean[] succeeded = new boolean[1];//在start()中直接完成时的结果
+            HttpCall<?> call = task.start(this, new Callback() {
+                @Override
+                public void onDone(boolean success) {
+                    succeeded[0] = success;
+                    if (mRunning.remove(key) != null) {
+                        if (success) {
+                            mFinished.add(key);
+                        }
+                        schedule();
+                    }
+                }
+            });
+            if (call != null && !call.isDone()) {
+                mRunning.put(key, call);
+            } else if (succeeded[0]) {
+                mFinished.add(key);
+            }
+        }
+    }
+}
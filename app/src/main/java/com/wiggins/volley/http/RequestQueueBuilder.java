@@ -0,0 +1,185 @@
+package com.wiggins.volley.http;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.android.volley.Cache;
+import com.android.volley.ExecutorDelivery;
+import com.android.volley.Network;
+import com.android.volley.RequestQueue;
+import com.android.volley.ResponseDelivery;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.DiskBasedCache;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+/**
+ * @Description RequestQueue构建类，可配置网络调度线程数、线程优先级、磁盘缓存目录和大小以及Network实现
+ * 使用：
+ * RequestQueue queue = new RequestQueueBuilder(context)
+ * .threadPoolSize(2)
+ * .cacheDir("volley")
+ * .maxCacheBytes(5 * 1024 * 1024)
+ * .build();
+ * @Author 一花一世界
+ */
+public class RequestQueueBuilder {
+
+    private static final String DEFAULT_CACHE_DIR = "volley";//默认缓存目录
+    private static final int DEFAULT_THREAD_POOL_SIZE = 4;//默认网络调度线程数
+    private static final int DEFAULT_DISK_USAGE_BYTES = 5 * 1024 * 1024;//默认磁盘缓存大小
+
+    private final Context mContext;
+    private int mThreadPoolSize = DEFAULT_THREAD_POOL_SIZE;
+    private int mThreadPriority = Process.THREAD_PRIORITY_BACKGROUND;
+    private File mCacheDir;
+    private int mMaxCacheBytes = DEFAULT_DISK_USAGE_BYTES;
+    private Cache mCache;
+    private Network mNetwork;
+    private ResponseDelivery mDelivery;
+    private Executor mDeliveryExecutor;
+    private CircuitBreaker mCircuitBreaker;
+    private RequestMetrics mMetrics;
+
+    /**
+     * @param context 上下文，用于获取默认缓存目录，指定了缓存目录或Cache时可为空
+     */
+    public RequestQueueBuilder(Context context) {
+        mContext = context == null ? null : context.getApplicationContext();
+    }
+
+    /**
+     * @Description 网络调度线程数
+     */
+    public RequestQueueBuilder threadPoolSize(int threadPoolSize) {
+        if (threadPoolSize <= 0) {
+            throw new IllegalArgumentException("threadPoolSize must be > 0");
+        }
+        mThreadPoolSize = threadPoolSize;
+        return this;
+    }
+
+    /**
+     * @Description 网络调度线程优先级，示例：Process.THREAD_PRIORITY_BACKGROUND
+     */
+    public RequestQueueBuilder threadPriority(int threadPriority) {
+        mThreadPriority = threadPriority;
+        return this;
+    }
+
+    /**
+     * @Description 磁盘缓存目录
+     */
+    public RequestQueueBuilder cacheDir(File cacheDir) {
+        mCacheDir = cacheDir;
+        return this;
+    }
+
+    /**
+     * @Description 磁盘缓存目录，位于应用缓存目录下
+     */
+    public RequestQueueBuilder cacheDir(String name) {
+        mCacheDir = new File(mContext.getCacheDir(), name);
+        return this;
+    }
+
+    /**
+     * @Description 磁盘缓存最大字节数
+     */
+    public RequestQueueBuilder maxCacheBytes(int maxCacheBytes) {
+        mMaxCacheBytes = maxCacheBytes;
+        return this;
+    }
+
+    /**
+     * @Description 缓存实现，指定后忽略缓存目录和大小的配置
+     */
+    public RequestQueueBuilder cache(Cache cache) {
+        mCache = cache;
+        return this;
+    }
+
+    /**
+     * @Description Network实现，默认使用支持gzip压缩的GzipHttpStack
+     */
+    public RequestQueueBuilder network(Network network) {
+        mNetwork = network;
+        return this;
+    }
+
+    /**
+     * @Description 结果分发实现，默认在主线程分发；设置后不再统计分发耗时
+     */
+    public RequestQueueBuilder delivery(ResponseDelivery delivery) {
+        mDelivery = delivery;
+        return this;
+    }
+
+    /**
+     * @Description 结果分发线程，默认为主线程，未设置delivery时生效
+     */
+    public RequestQueueBuilder deliveryExecutor(Executor executor) {
+        mDeliveryExecutor = executor;
+        return this;
+    }
+
+    /**
+     * @Description 按主机熔断的熔断器，默认不熔断；多个队列可以共用同一个熔断器
+     */
+    public RequestQueueBuilder circuitBreaker(CircuitBreaker circuitBreaker) {
+        mCircuitBreaker = circuitBreaker;
+        return this;
+    }
+
+    /**
+     * @Description 请求各阶段耗时统计，默认不统计；多个队列可以共用同一个统计
+     */
+    public RequestQueueBuilder metrics(RequestMetrics metrics) {
+        mMetrics = metrics;
+        return this;
+    }
+
+    /**
+     * @Description 创建并启动RequestQueue
+     */
+    public RequestQueue build() {
+        Cache cache = mCache;
+        if (cache == null) {
+            File cacheDir = mCacheDir != null ? mCacheDir : new File(mContext.getCacheDir(), DEFAULT_CACHE_DIR);
+            cache = new DiskBasedCache(cacheDir, mMaxCacheBytes);
+        }
+        Network network = mNetwork != null ? mNetwork : new BasicNetwork(new GzipHttpStack());
+        network = new DispatcherNetwork(network, mThreadPriority, mCircuitBreaker, mMetrics);
+        ResponseDelivery delivery = mDelivery;
+        RequestQueue queue;
+        if (mMetrics == null) {
+            if (delivery == null) {
+                delivery = new ExecutorDelivery(getDeliveryExecutor());
+            }
+            queue = new RequestQueue(cache, network, mThreadPoolSize, delivery);
+        } else {
+            if (delivery == null) {
+                delivery = new MeteredDelivery(mMetrics, getDeliveryExecutor());
+            }
+            queue = new MeteredRequestQueue(new MeteredCache(cache, mMetrics), network, mThreadPoolSize, delivery, mMetrics);
+        }
+        queue.start();
+        return queue;
+    }
+
+    private Executor getDeliveryExecutor() {
+        if (mDeliveryExecutor != null) {
+            return mDeliveryExecutor;
+        }
+        final Handler handler = new Handler(Looper.getMainLooper());
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                handler.post(command);
+            }
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package com.wiggins.volley.http;
+
+import com.wiggins.volley.bean.ResultDesc;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * @Description 解析聚合数据格式的返回数据：{"error_code":0,"reason":"","result":...}，不依赖Android资源，可在JVM中直接使用
+ * @Author 一花一世界
+ */
+public class ResultDescParser {
+
+    private ResultDescParser() {
+    }
+
+    /**
+     * @Description 解析返回码、返回说明和原始的返回数据
+     */
+    public static ResultDesc parse(String result) throws JSONException {
+        JSONObject jsonObject = new JSONObject(result);
+        //返回码
+        int error_code = jsonObject.getInt("error_code");
+        //返回说明
+        String reason = jsonObject.getString("reason");
+        //返回数据
+        String resultData = jsonObject.getString("result");
+        return create(error_code, reason, resultData);
+    }
+
+    public static ResultDesc create(int error_code, String reason, String resultData) {
+        ResultDesc resultDesc = new ResultDesc();
+        resultDesc.setError_code(error_code);
+        resultDesc.setReason(reason);
+        resultDesc.setResult(resultData);
+        return resultDesc;
+    }
+}
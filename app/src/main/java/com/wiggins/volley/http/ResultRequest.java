@@ -0,0 +1,101 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Response;
+import com.android.volley.Response.ErrorListener;
+import com.android.volley.Response.Listener;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.wiggins.volley.bean.ResultData;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * @Description 自定义ResultRequest<T>用于请求聚合数据格式的接口：{"error_code":0,"reason":"","result":...}
+ * 在网络线程中一次流式解析出返回码、返回说明和具体类型的返回数据，主线程只接收解析完成的对象
+ * 接口返回错误码时不写入缓存
+ * @Author 一花一世界
+ */
+public class ResultRequest<T> extends BaseRequest<ResultData<T>> {
+
+    private final Type mType;//result字段的类型
+    private final TypeAdapter<T> mAdapter;
+
+    /**
+     * @param method        请求方式
+     * @param url           访问服务器地址
+     * @param type          result字段的类型，示例：new TypeToken<List<TodayHistoryQuery>>(){}.getType()
+     * @param listener      成功回调
+     * @param errorListener 失败回调
+     */
+    @SuppressWarnings("unchecked")
+    public ResultRequest(int method, String url, Type type, Listener<ResultData<T>> listener, ErrorListener errorListener) {
+        super(method, url, listener, errorListener);
+        mType = type;
+        mAdapter = (TypeAdapter<T>) GsonRequest.getGson().getAdapter(TypeToken.get(type));
+    }
+
+    public ResultRequest(String url, Type type, Listener<ResultData<T>> listener, ErrorListener errorListener) {
+        this(Method.GET, url, type, listener, errorListener);
+    }
+
+    @Override
+    protected Type getResponseType() {
+        return mType;
+    }
+
+    @Override
+    protected boolean shouldCacheResult(ResultData<T> result) {
+        return result.getError_code() == 0;
+    }
+
+    @Override
+    protected Response<ResultData<T>> parseResponse(NetworkResponse response) {
+        try {
+            return Response.success(readResultData(GsonRequest.newJsonReader(response), mAdapter), null);
+        } catch (IOException e) {
+            return Response.error(new ParseError(e));
+        } catch (JsonParseException e) {
+            return Response.error(new ParseError(e));
+        } catch (IllegalStateException e) {
+            return Response.error(new ParseError(e));
+        } catch (NumberFormatException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    /**
+     * @Description 流式解析返回数据，字段顺序不固定，接口出错时result可能为null或空字符串，此时不解析result
+     */
+    static <T> ResultData<T> readResultData(JsonReader reader, TypeAdapter<T> adapter) throws IOException {
+        ResultData<T> resultData = new ResultData<>();
+        reader.setLenient(true);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if ("error_code".equals(name)) {
+                resultData.setError_code(reader.nextInt());
+            } else if ("reason".equals(name)) {
+                resultData.setReason(reader.nextString());
+            } else if ("result".equals(name)) {
+                JsonToken token = reader.peek();
+                if (token == JsonToken.BEGIN_ARRAY || token == JsonToken.BEGIN_OBJECT) {
+                    resultData.setResult(adapter.read(reader));
+                } else {
+                    reader.skipValue();
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return resultData;
+    }
+}
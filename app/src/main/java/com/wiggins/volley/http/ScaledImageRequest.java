@@ -0,0 +1,229 @@
+package com.wiggins.volley.http;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.widget.ImageView.ScaleType;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.Response.ErrorListener;
+import com.android.volley.Response.Listener;
+import com.android.volley.VolleyLog;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.wiggins.volley.utils.BitmapPool;
+import com.wiggins.volley.utils.ThumbnailDiskCache;
+
+/**
+ * @Description 按显示尺寸解码的图片请求
+ * 先只读取图片尺寸，按目标宽高和ScaleType计算需要的尺寸，用inSampleSize按2的幂次降采样解码，
+ * 解码后仍大于需要的尺寸时再缩放，内存占用与显示尺寸一致而不是原图尺寸；
+ * 设置BitmapPool后解码为可变图片，并优先复用池中图片的内存；设置ThumbnailDiskCache后把缩放后的图片写入磁盘，下次不再从原图解码
+ * @Author 一花一世界
+ */
+public class ScaledImageRequest extends Request<Bitmap> {
+
+    private static final Object DECODE_LOCK = new Object();//所有图片串行解码，避免同时解码多张大图
+
+    private final Listener<Bitmap> mListener;
+    private final int mMaxWidth;//目标宽度，0表示不限制
+    private final int mMaxHeight;//目标高度，0表示不限制
+    private final ScaleType mScaleType;//显示方式，决定按目标尺寸裁剪还是完整显示
+    private final Bitmap.Config mDecodeConfig;//解码格式
+    private BitmapPool mBitmapPool;//解码时复用的图片池，为空时不复用
+    private ThumbnailDiskCache mThumbnailCache;//缩放后图片的磁盘缓存，为空时不保存
+    private Priority mPriority = Priority.NORMAL;//请求优先级，预加载时由SizedImageLoader.prefetch设置为LOW
+
+    /**
+     * @param url           图片地址
+     * @param maxWidth      目标宽度，0表示不限制
+     * @param maxHeight     目标高度，0表示不限制
+     * @param scaleType     ImageView的ScaleType
+     * @param decodeConfig  解码格式，不透明的图片可使用RGB_565
+     * @param listener      成功回调
+     * @param errorListener 失败回调
+     */
+    public ScaledImageRequest(String url, int maxWidth, int maxHeight, ScaleType scaleType, Bitmap.Config decodeConfig,
+                              Listener<Bitmap> listener, ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+        mListener = listener;
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+        mScaleType = scaleType == null ? ScaleType.FIT_CENTER : scaleType;
+        mDecodeConfig = decodeConfig;
+    }
+
+    /**
+     * @Description 内存缓存key，相同地址的不同目标尺寸和显示方式分别缓存
+     */
+    public static String getCacheKey(String url, int maxWidth, int maxHeight, ScaleType scaleType) {
+        return new StringBuilder(url.length() + 16).append("#W").append(maxWidth).append("#H").append(maxHeight)
+                .append("#S").append(scaleType == null ? ScaleType.FIT_CENTER.ordinal() : scaleType.ordinal())
+                .append(url).toString();
+    }
+
+    /**
+     * @Description 设置解码时复用的图片池，需要在加入队列前调用
+     */
+    public void setBitmapPool(BitmapPool bitmapPool) {
+        mBitmapPool = bitmapPool;
+    }
+
+    /**
+     * @Description 设置缩放后图片的磁盘缓存，需要在加入队列前调用
+     */
+    public void setThumbnailCache(ThumbnailDiskCache thumbnailCache) {
+        mThumbnailCache = thumbnailCache;
+    }
+
+    /**
+     * @Description 设置请求优先级，需要在加入队列前调用
+     */
+    public void setPriority(Priority priority) {
+        mPriority = priority;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    @Override
+    protected void deliverResponse(Bitmap response) {
+        mListener.onResponse(response);
+    }
+
+    @Override
+    protected Response<Bitmap> parseNetworkResponse(NetworkResponse response) {
+        Bitmap bitmap;
+        synchronized (DECODE_LOCK) {
+            try {
+                bitmap = decode(response.data);
+            } catch (OutOfMemoryError e) {
+                VolleyLog.e("Caught OOM for %d byte image, url=%s", response.data.length, getUrl());
+                return Response.error(new ParseError(e));
+            }
+        }
+        if (bitmap == null) {
+            return Response.error(new ParseError(response));
+        }
+        // 在网络线程中写入，不占用主线程
+        if (mThumbnailCache != null && !isCanceled()) {
+            mThumbnailCache.put(getCacheKey(getUrl(), mMaxWidth, mMaxHeight, mScaleType), bitmap);
+        }
+        return Response.success(bitmap, HttpHeaderParser.parseCacheHeaders(response));
+    }
+
+    private Bitmap decode(byte[] data) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = mDecodeConfig;
+        // 只读取图片尺寸
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        int actualWidth = options.outWidth;
+        int actualHeight = options.outHeight;
+        if (actualWidth <= 0 || actualHeight <= 0) {
+            return null;
+        }
+
+        int desiredWidth = getResizedDimension(mMaxWidth, mMaxHeight, actualWidth, actualHeight, mScaleType);
+        int desiredHeight = getResizedDimension(mMaxHeight, mMaxWidth, actualHeight, actualWidth, mScaleType);
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = findBestSampleSize(actualWidth, actualHeight, desiredWidth, desiredHeight);
+        Bitmap sampled = decodeWithPool(data, options, actualWidth, actualHeight);
+        if (sampled != null && (sampled.getWidth() > desiredWidth || sampled.getHeight() > desiredHeight)) {
+            Bitmap scaled = Bitmap.createScaledBitmap(sampled, desiredWidth, desiredHeight, true);
+            if (scaled != sampled) {
+                // 降采样的中间结果不会被显示，可以直接放入池中
+                if (mBitmapPool != null) {
+                    mBitmapPool.put(sampled);
+                } else {
+                    sampled.recycle();
+                }
+            }
+            return scaled;
+        }
+        return sampled;
+    }
+
+    /**
+     * @Description 从池中取出与解码结果尺寸兼容的图片作为inBitmap，格式不支持复用时不复用重新解码
+     */
+    private Bitmap decodeWithPool(byte[] data, BitmapFactory.Options options, int actualWidth, int actualHeight) {
+        if (mBitmapPool == null) {
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+        options.inMutable = true;
+        int sampleSize = options.inSampleSize;
+        // API 19以下复用时inSampleSize必须为1
+        if (sampleSize == 1 || Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            options.inBitmap = mBitmapPool.get((actualWidth + sampleSize - 1) / sampleSize,
+                    (actualHeight + sampleSize - 1) / sampleSize, mDecodeConfig);
+        }
+        if (options.inBitmap == null) {
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+        Bitmap reusable = options.inBitmap;
+        try {
+            Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            if (bitmap == null) {
+                mBitmapPool.put(reusable);
+            }
+            return bitmap;
+        } catch (IllegalArgumentException e) {
+            // API 19以下只支持复用JPEG和PNG，其他格式或尺寸不兼容时抛出异常
+            options.inBitmap = null;
+            mBitmapPool.put(reusable);
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+    }
+
+    /**
+     * @Description 按目标尺寸和显示方式计算一边需要的尺寸，保持宽高比，不放大
+     * CENTER_CROP需要两边都不小于目标尺寸，FIT_XY直接使用目标尺寸，其他方式完整显示在目标尺寸内
+     *
+     * @param maxPrimary      这一边的目标尺寸，0表示按另一边等比计算
+     * @param maxSecondary    另一边的目标尺寸，0表示不限制
+     * @param actualPrimary   这一边的实际尺寸
+     * @param actualSecondary 另一边的实际尺寸
+     */
+    static int getResizedDimension(int maxPrimary, int maxSecondary, int actualPrimary, int actualSecondary, ScaleType scaleType) {
+        if (maxPrimary == 0 && maxSecondary == 0) {
+            return actualPrimary;
+        }
+        int resized;
+        if (scaleType == ScaleType.FIT_XY) {
+            resized = maxPrimary == 0 ? actualPrimary : maxPrimary;
+        } else if (maxPrimary == 0) {
+            resized = (int) (actualPrimary * ((double) maxSecondary / actualSecondary));
+        } else if (maxSecondary == 0) {
+            resized = maxPrimary;
+        } else {
+            double ratio = (double) actualSecondary / actualPrimary;
+            resized = maxPrimary;
+            if (scaleType == ScaleType.CENTER_CROP) {
+                if (resized * ratio < maxSecondary) {
+                    resized = (int) (maxSecondary / ratio);
+                }
+            } else if (resized * ratio > maxSecondary) {
+                resized = (int) (maxSecondary / ratio);
+            }
+        }
+        return Math.max(1, Math.min(resized, actualPrimary));
+    }
+
+    /**
+     * @Description 不小于需要尺寸的最大2的幂次降采样倍数
+     */
+    static int findBestSampleSize(int actualWidth, int actualHeight, int desiredWidth, int desiredHeight) {
+        double ratio = Math.min((double) actualWidth / desiredWidth, (double) actualHeight / desiredHeight);
+        int sampleSize = 1;
+        while (sampleSize * 2 <= ratio) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
@@ -0,0 +1,669 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.Cache;
+import com.android.volley.VolleyLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Description 追加写入、内存映射读取的磁盘缓存，用于替代每个缓存一个文件的DiskBasedCache
+ * 存储结构：
+ * 1. 缓存数据按顺序追加写入若干个固定大小的段文件(segment-N)，每个段文件以只读方式整体内存映射，读取时直接从映射区域中解析
+ * 2. 索引(index)记录每个key所在的段文件、偏移量、长度和过期时间，启动时只需读取这一个文件，耗时与索引大小成正比，与缓存文件数量无关
+ * 3. 超出缓存大小时整段淘汰最早的段文件；段文件中失效数据过多时在后台线程中把有效数据搬到当前段文件后删除旧段文件
+ * 读取不加锁，写入、删除和整理共用一把写锁
+ * @Author 一花一世界
+ */
+public class SegmentDiskCache implements Cache {
+
+    private static final int INDEX_MAGIC = 0x20170301;//索引文件标识
+    private static final int RECORD_MAGIC = 0x20170302;//缓存记录标识
+    private static final int INDEX_VERSION = 1;
+    private static final String INDEX_FILE = "index";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final int MIN_SEGMENT_BYTES = 256 * 1024;//段文件最小字节数
+    private static final int SEGMENTS_PER_CACHE = 4;//缓存大小按段文件数量划分
+    private static final float COMPACT_LIVE_RATIO = 0.5f;//段文件中有效数据低于该比例时整理
+    private static final long INDEX_SAVE_DELAY_MS = 2000;//写入后延迟保存索引，合并连续写入
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mRootDirectory;
+    private final long mMaxCacheSizeInBytes;
+    private final int mSegmentBytes;
+
+    private final Map<String, Location> mIndex = new ConcurrentHashMap<>();//key -> 缓存位置
+    private final Map<Integer, Segment> mSegments = new ConcurrentHashMap<>();//段文件编号 -> 段文件
+    private final Object mWriteLock = new Object();
+    private final Object mIndexFileLock = new Object();//保证后写入的索引文件总是更新的快照
+    private final ScheduledExecutorService mExecutor;//保存索引和整理段文件的后台线程
+
+    private volatile boolean mInitialized;
+    private Segment mActiveSegment;//当前追加写入的段文件
+    private int mNextSegmentId;//段文件编号只增不减，避免后台删除旧文件时误删同名的新文件
+    private boolean mIndexSaveScheduled;
+
+    /**
+     * @param rootDirectory       缓存目录，目录中不属于该缓存的文件会被删除
+     * @param maxCacheSizeInBytes 缓存最大字节数
+     */
+    public SegmentDiskCache(File rootDirectory, long maxCacheSizeInBytes) {
+        mRootDirectory = rootDirectory;
+        mMaxCacheSizeInBytes = maxCacheSizeInBytes;
+        mSegmentBytes = (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_SEGMENT_BYTES, maxCacheSizeInBytes / SEGMENTS_PER_CACHE));
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "SegmentDiskCache");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @Description 读取索引文件，由CacheDispatcher在后台线程中调用
+     */
+    @Override
+    public void initialize() {
+        synchronized (mWriteLock) {
+            if (mInitialized) {
+                return;
+            }
+            if (!mRootDirectory.exists() && !mRootDirectory.mkdirs()) {
+                VolleyLog.e("Unable to create cache dir %s", mRootDirectory.getAbsolutePath());
+            }
+            try {
+                loadIndex();
+            } catch (IOException e) {
+                // 索引缺失或损坏时丢弃所有段文件重新开始，缓存数据可以重新从网络获取
+                VolleyLog.d("SegmentDiskCache index unusable, resetting: %s", e);
+                closeSegments();
+                mIndex.clear();
+            }
+            deleteUnknownFiles();
+            try {
+                if (mActiveSegment == null) {
+                    mActiveSegment = openSegment(nextSegmentId(), 0);
+                }
+            } catch (IOException e) {
+                VolleyLog.e("Unable to open cache segment: %s", e);
+            }
+            mInitialized = true;
+        }
+    }
+
+    @Override
+    public Entry get(String key) {
+        ensureInitialized();
+        Location location = mIndex.get(key);
+        if (location == null) {
+            return null;
+        }
+        Segment segment = mSegments.get(location.segmentId);
+        if (segment == null) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.limit(location.offset + location.length);
+            buffer.position(location.offset);
+            if (buffer.getInt() != RECORD_MAGIC || !key.equals(readString(buffer))) {
+                throw new IOException("record mismatch");
+            }
+            Entry entry = new Entry();
+            entry.etag = readString(buffer);
+            entry.serverDate = buffer.getLong();
+            buffer.getLong();// 写入时的ttl，以索引中的为准
+            buffer.getLong();// 写入时的softTtl，以索引中的为准
+            // 每个响应头至少包含名称和值两个长度字段
+            int headerCount = readLength(buffer, 8);
+            Map<String, String> headers = headerCount == 0 ? Collections.<String, String>emptyMap() : new HashMap<String, String>(headerCount * 2);
+            for (int i = 0; i < headerCount; i++) {
+                headers.put(readString(buffer), readString(buffer));
+            }
+            entry.responseHeaders = headers;
+            // 长度来自磁盘，损坏时可能要求分配极大的数组，分配前先检查是否超出记录范围
+            entry.data = new byte[readLength(buffer, 1)];
+            buffer.get(entry.data);
+            entry.ttl = location.ttl;
+            entry.softTtl = location.softTtl;
+            return entry;
+        } catch (RuntimeException e) {
+            VolleyLog.d("%s: %s", key, e.toString());
+        } catch (IOException e) {
+            VolleyLog.d("%s: %s", key, e.toString());
+        }
+        remove(key);
+        return null;
+    }
+
+    @Override
+    public void put(String key, Entry entry) {
+        ensureInitialized();
+        byte[] header;
+        try {
+            header = encodeHeader(key, entry);
+        } catch (IOException e) {
+            VolleyLog.d("Could not encode %s: %s", key, e.toString());
+            return;
+        }
+        int length = header.length + 4 + entry.data.length;
+        if (length > mSegmentBytes) {
+            // 超过单个段文件大小的数据不缓存，同时删除旧数据
+            remove(key);
+            return;
+        }
+        synchronized (mWriteLock) {
+            try {
+                Segment segment = segmentFor(length);
+                int offset = segment.writePosition;
+                ByteBuffer dataLength = ByteBuffer.allocate(4);
+                dataLength.putInt(entry.data.length).flip();
+                ByteBuffer[] buffers = {ByteBuffer.wrap(header), dataLength, ByteBuffer.wrap(entry.data)};
+                segment.channel.position(offset);
+                while (buffers[2].hasRemaining()) {
+                    segment.channel.write(buffers);
+                }
+                segment.writePosition += length;
+                segment.liveBytes += length;
+                release(mIndex.put(key, new Location(segment.id, offset, length, entry.ttl, entry.softTtl)));
+            } catch (IOException e) {
+                VolleyLog.d("Could not write %s: %s", key, e.toString());
+                release(mIndex.remove(key));
+            }
+            scheduleIndexSave();
+        }
+    }
+
+    @Override
+    public void invalidate(String key, boolean fullExpire) {
+        ensureInitialized();
+        synchronized (mWriteLock) {
+            Location location = mIndex.get(key);
+            if (location != null) {
+                // 过期时间保存在索引中，只需更新索引，不用重写数据
+                mIndex.put(key, new Location(location.segmentId, location.offset, location.length,
+                        fullExpire ? 0 : location.ttl, 0));
+                scheduleIndexSave();
+            }
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        ensureInitialized();
+        synchronized (mWriteLock) {
+            if (release(mIndex.remove(key))) {
+                scheduleIndexSave();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (mWriteLock) {
+            mIndex.clear();
+            closeSegments();
+            File[] files = mRootDirectory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            mActiveSegment = null;
+            mInitialized = false;
+            initialize();
+            VolleyLog.d("Cache cleared.");
+        }
+    }
+
+    /**
+     * @Description 当前缓存的条目数
+     */
+    public int size() {
+        return mIndex.size();
+    }
+
+    /**
+     * @Description 所有段文件占用的字节数
+     */
+    public long getSizeInBytes() {
+        long size = 0;
+        for (Segment segment : mSegments.values()) {
+            size += segment.writePosition;
+        }
+        return size;
+    }
+
+    /**
+     * @Description 立即保存索引，通常不需要调用，写入后会在后台延迟保存
+     */
+    public void flush() {
+        saveIndex();
+    }
+
+    private void ensureInitialized() {
+        if (!mInitialized) {
+            initialize();
+        }
+    }
+
+    /**
+     * @Description 获取能容纳指定长度的段文件，当前段文件写满时新建段文件，超过缓存大小时淘汰最早的段文件
+     */
+    private Segment segmentFor(int length) throws IOException {
+        if (mActiveSegment != null && mActiveSegment.writePosition + length <= mSegmentBytes) {
+            return mActiveSegment;
+        }
+        mActiveSegment = openSegment(nextSegmentId(), 0);
+        while ((long) mSegments.size() * mSegmentBytes > mMaxCacheSizeInBytes + mSegmentBytes) {
+            evictSegment(oldestSegmentId());
+        }
+        return mActiveSegment;
+    }
+
+    /**
+     * @Description 淘汰整个段文件：先从索引中移除其中的数据，保存索引后再删除文件
+     */
+    private void evictSegment(int segmentId) {
+        Iterator<Map.Entry<String, Location>> iterator = mIndex.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().segmentId == segmentId) {
+                iterator.remove();
+            }
+        }
+        final Segment segment = mSegments.remove(segmentId);
+        if (segment != null) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    deleteAfterIndexSaved(segment);
+                }
+            });
+        }
+    }
+
+    /**
+     * @Description 释放旧数据占用的空间，有效数据比例过低时安排整理
+     */
+    private boolean release(Location location) {
+        if (location == null) {
+            return false;
+        }
+        final Segment segment = mSegments.get(location.segmentId);
+        if (segment != null) {
+            segment.liveBytes -= location.length;
+            if (segment != mActiveSegment && !segment.compacting
+                    && segment.liveBytes < segment.writePosition * COMPACT_LIVE_RATIO) {
+                segment.compacting = true;
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        compact(segment);
+                    }
+                });
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @Description 整理段文件：把仍然有效的数据逐条搬到当前段文件，索引保存后删除旧段文件，在后台线程中执行
+     */
+    private void compact(Segment segment) {
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, Location> item : mIndex.entrySet()) {
+            if (item.getValue().segmentId == segment.id) {
+                keys.add(item.getKey());
+            }
+        }
+        for (String key : keys) {
+            synchronized (mWriteLock) {
+                Location location = mIndex.get(key);
+                if (location == null || location.segmentId != segment.id || mSegments.get(segment.id) != segment) {
+                    continue;
+                }
+                try {
+                    ByteBuffer record = segment.buffer.duplicate();
+                    record.limit(location.offset + location.length);
+                    record.position(location.offset);
+                    Segment target = segmentFor(location.length);
+                    if (target == segment) {
+                        continue;
+                    }
+                    target.channel.position(target.writePosition);
+                    while (record.hasRemaining()) {
+                        target.channel.write(record);
+                    }
+                    mIndex.put(key, new Location(target.id, target.writePosition, location.length, location.ttl, location.softTtl));
+                    target.writePosition += location.length;
+                    target.liveBytes += location.length;
+                    segment.liveBytes -= location.length;
+                } catch (IOException e) {
+                    VolleyLog.d("Could not compact %s: %s", key, e.toString());
+                    mIndex.remove(key);
+                }
+            }
+        }
+        synchronized (mWriteLock) {
+            if (mSegments.get(segment.id) != segment) {
+                return;
+            }
+            mSegments.remove(segment.id);
+        }
+        deleteAfterIndexSaved(segment);
+    }
+
+    private void deleteAfterIndexSaved(Segment segment) {
+        saveIndex();
+        segment.close();
+        if (!segment.file.delete()) {
+            VolleyLog.d("Could not delete cache segment %s", segment.file.getAbsolutePath());
+        }
+    }
+
+    private void scheduleIndexSave() {
+        if (mIndexSaveScheduled) {
+            return;
+        }
+        mIndexSaveScheduled = true;
+        mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (mWriteLock) {
+                    mIndexSaveScheduled = false;
+                }
+                saveIndex();
+            }
+        }, INDEX_SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @Description 保存当前索引，快照和写文件在同一把锁内，后写入的文件总是更新的快照
+     */
+    private void saveIndex() {
+        synchronized (mIndexFileLock) {
+            try {
+                writeIndex(snapshotIndex());
+            } catch (IOException e) {
+                VolleyLog.e("Could not save cache index: %s", e.toString());
+            }
+        }
+    }
+
+    /**
+     * @Description 序列化当前索引
+     */
+    private byte[] snapshotIndex() {
+        synchronized (mWriteLock) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + mIndex.size() * 96);
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(INDEX_VERSION);
+                out.writeInt(mSegmentBytes);
+                out.writeInt(mSegments.size());
+                for (Segment segment : mSegments.values()) {
+                    out.writeInt(segment.id);
+                    out.writeInt(segment.writePosition);
+                }
+                out.writeInt(mActiveSegment == null ? -1 : mActiveSegment.id);
+                out.writeInt(mIndex.size());
+                for (Map.Entry<String, Location> item : mIndex.entrySet()) {
+                    Location location = item.getValue();
+                    out.writeUTF(item.getKey());
+                    out.writeInt(location.segmentId);
+                    out.writeInt(location.offset);
+                    out.writeInt(location.length);
+                    out.writeLong(location.ttl);
+                    out.writeLong(location.softTtl);
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * @Description 先写临时文件再重命名，保证索引文件要么是旧的要么是新的
+     */
+    private void writeIndex(byte[] index) throws IOException {
+        File tmp = new File(mRootDirectory, INDEX_FILE + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            fos.write(index);
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+        if (!tmp.renameTo(new File(mRootDirectory, INDEX_FILE))) {
+            throw new IOException("Could not rename " + tmp);
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        File file = new File(mRootDirectory, INDEX_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 16 * 1024));
+        try {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION || in.readInt() != mSegmentBytes) {
+                throw new IOException("bad index header");
+            }
+            int segmentCount = in.readInt();
+            for (int i = 0; i < segmentCount; i++) {
+                int id = in.readInt();
+                int writePosition = in.readInt();
+                if (id < 0 || writePosition < 0 || writePosition > mSegmentBytes) {
+                    throw new IOException("bad segment " + id + "@" + writePosition);
+                }
+                mNextSegmentId = Math.max(mNextSegmentId, id + 1);
+                if (new File(mRootDirectory, SEGMENT_PREFIX + id).exists()) {
+                    openSegment(id, writePosition);
+                }
+            }
+            int activeId = in.readInt();
+            mActiveSegment = mSegments.get(activeId);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                Location location = new Location(in.readInt(), in.readInt(), in.readInt(), in.readLong(), in.readLong());
+                Segment segment = mSegments.get(location.segmentId);
+                if (segment != null && location.offset >= 0 && location.length > 0
+                        && (long) location.offset + location.length <= segment.writePosition) {
+                    segment.liveBytes += location.length;
+                    mIndex.put(key, location);
+                }
+            }
+        } catch (EOFException e) {
+            throw new IOException("truncated index", e);
+        } finally {
+            in.close();
+        }
+    }
+
+    private Segment openSegment(int id, int writePosition) throws IOException {
+        File file = new File(mRootDirectory, SEGMENT_PREFIX + id);
+        Segment segment = new Segment(id, file, mSegmentBytes, writePosition);
+        mSegments.put(id, segment);
+        return segment;
+    }
+
+    private int nextSegmentId() {
+        return mNextSegmentId++;
+    }
+
+    private int oldestSegmentId() {
+        int id = Integer.MAX_VALUE;
+        for (Integer segmentId : mSegments.keySet()) {
+            id = Math.min(id, segmentId);
+        }
+        return id;
+    }
+
+    private void closeSegments() {
+        for (Segment segment : mSegments.values()) {
+            segment.close();
+        }
+        mSegments.clear();
+        mActiveSegment = null;
+    }
+
+    private void deleteUnknownFiles() {
+        File[] files = mRootDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            boolean known = INDEX_FILE.equals(name);
+            for (Segment segment : mSegments.values()) {
+                known |= segment.file.getName().equals(name);
+            }
+            if (!known) {
+                file.delete();
+            }
+        }
+    }
+
+    private static byte[] encodeHeader(String key, Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(bytes));
+        out.writeInt(RECORD_MAGIC);
+        writeString(out, key);
+        writeString(out, entry.etag);
+        out.writeLong(entry.serverDate);
+        out.writeLong(entry.ttl);
+        out.writeLong(entry.softTtl);
+        Map<String, String> headers = entry.responseHeaders;
+        out.writeInt(headers == null ? 0 : headers.size());
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                writeString(out, header.getKey());
+                writeString(out, header.getValue());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * @Description 读取记录中的长度或数量，超出记录剩余字节时视为记录损坏
+     *
+     * @param minBytesPerItem 每一项至少占用的字节数
+     */
+    private static int readLength(ByteBuffer buffer, int minBytesPerItem) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || (long) length * minBytesPerItem > buffer.remaining()) {
+            throw new IOException("bad length " + length);
+        }
+        return length;
+    }
+
+    /**
+     * @Description 缓存数据在段文件中的位置及过期时间
+     */
+    private static class Location {
+
+        final int segmentId;
+        final int offset;
+        final int length;
+        final long ttl;
+        final long softTtl;
+
+        Location(int segmentId, int offset, int length, long ttl, long softTtl) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+            this.ttl = ttl;
+            this.softTtl = softTtl;
+        }
+    }
+
+    /**
+     * @Description 段文件，创建时预分配固定大小并整体只读映射，写入通过FileChannel追加
+     */
+    private static class Segment {
+
+        final int id;
+        final File file;
+        final RandomAccessFile raf;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int writePosition;//已写入的字节数
+        int liveBytes;//有效数据字节数
+        boolean compacting;
+
+        Segment(int id, File file, int size, int writePosition) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            if (raf.length() < size) {
+                raf.setLength(size);
+            }
+            this.channel = raf.getChannel();
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            this.writePosition = writePosition;
+        }
+
+        void close() {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.VolleyError;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Description 合并正在进行中的相同请求（包括POST），相同的请求只发送一次，所有订阅者共享同一个返回结果
+ * 请求是否相同由请求类型、请求方式、地址、请求体、返回数据类型和缓存策略决定；
+ * 每个订阅者可以单独取消，所有订阅者都取消后才取消实际的网络请求
+ * @Author 一花一世界
+ */
+public class SingleFlight {
+
+    private final Map<String, Flight<?>> mFlights = new HashMap<>();//进行中的请求，key为请求的合并标识
+
+    /**
+     * @Description 添加请求，已有相同请求进行中时只订阅其结果，否则添加到请求队列
+     * @return 传入的请求，可用于绑定HttpCall
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Request<T> add(RequestQueue queue, BaseRequest<T> request) {
+        String key = getKey(request);
+        synchronized (this) {
+            Flight<T> flight = (Flight<T>) mFlights.get(key);
+            if (flight != null && flight.join(request)) {
+                request.addMarker("single-flight-join");
+                return request;
+            }
+            mFlights.put(key, new Flight<>(this, key, request));
+        }
+        return queue.add(request);
+    }
+
+    /**
+     * @Description 进行中的请求数量
+     */
+    public synchronized int size() {
+        return mFlights.size();
+    }
+
+    synchronized void remove(String key, Flight<?> flight) {
+        if (mFlights.get(key) == flight) {
+            mFlights.remove(key);
+        }
+    }
+
+    /**
+     * @Description 请求的合并标识
+     */
+    static String getKey(BaseRequest<?> request) {
+        StringBuilder key = new StringBuilder(128);
+        key.append(request.getClass().getName()).append(' ').append(request.getMethod()).append(' ')
+                .append(request.getCacheKey());
+        Type type = request.getResponseType();
+        if (type != null) {
+            key.append(' ').append(type);
+        }
+        key.append(' ').append(request.getCachePolicy());
+        return key.toString();
+    }
+
+    /**
+     * @Description 一次实际发送的请求及其所有订阅者，结果在主线程中由发送的请求分发给其他订阅者
+     */
+    static class Flight<T> {
+
+        private final SingleFlight mOwner;
+        private final String mKey;
+        private final BaseRequest<T> mLeader;//实际发送的请求
+        private final List<BaseRequest<T>> mFollowers = new ArrayList<>();//合并到该请求的订阅者
+        private int mSubscribers = 1;//未取消的订阅者数量，包括实际发送的请求
+        private boolean mDelivered;//是否已返回过结果，返回后不再接受新的订阅者
+
+        Flight(SingleFlight owner, String key, BaseRequest<T> leader) {
+            mOwner = owner;
+            mKey = key;
+            mLeader = leader;
+            leader.setFlight(this);
+        }
+
+        synchronized boolean join(BaseRequest<T> request) {
+            if (mDelivered || mSubscribers == 0 || mLeader.isCanceled()) {
+                return false;
+            }
+            request.setFlight(this);
+            mFollowers.add(request);
+            mSubscribers++;
+            return true;
+        }
+
+        /**
+         * @Description 取消单个订阅者，所有订阅者都取消后取消实际发送的请求
+         */
+        void unsubscribe(BaseRequest<?> request) {
+            boolean cancelLeader;
+            synchronized (this) {
+                if (!request.markUnsubscribed()) {
+                    return;
+                }
+                mSubscribers--;
+                cancelLeader = mSubscribers == 0;
+            }
+            if (request != mLeader) {
+                request.cancel();
+            }
+            if (cancelLeader) {
+                mLeader.cancel();
+                mOwner.remove(mKey, this);
+            }
+        }
+
+        /**
+         * @Description 取消指定标签的所有订阅者
+         */
+        void cancelAll(Object tag) {
+            List<BaseRequest<?>> canceled = new ArrayList<>();
+            synchronized (this) {
+                if (mLeader.getTag() == tag) {
+                    canceled.add(mLeader);
+                }
+                for (BaseRequest<T> follower : mFollowers) {
+                    if (follower.getTag() == tag) {
+                        canceled.add(follower);
+                    }
+                }
+            }
+            for (BaseRequest<?> request : canceled) {
+                unsubscribe(request);
+            }
+        }
+
+        void deliverResponse(BaseRequest<T> from, T response) {
+            if (from != mLeader) {
+                return;
+            }
+            for (BaseRequest<T> follower : onDelivered()) {
+                follower.notifyResponse(response);
+            }
+        }
+
+        void deliverError(BaseRequest<T> from, VolleyError error) {
+            if (from != mLeader) {
+                return;
+            }
+            for (BaseRequest<T> follower : onDelivered()) {
+                follower.notifyError(error);
+            }
+        }
+
+        /**
+         * @Description 首次返回结果后从进行中的请求中移除，之后的相同请求重新发送；
+         * 先返回缓存再刷新时，刷新后的结果仍分发给已有的订阅者
+         */
+        private List<BaseRequest<T>> onDelivered() {
+            List<BaseRequest<T>> followers;
+            synchronized (this) {
+                mDelivered = true;
+                followers = new ArrayList<>(mFollowers);
+            }
+            mOwner.remove(mKey, this);
+            return followers;
+        }
+    }
+}
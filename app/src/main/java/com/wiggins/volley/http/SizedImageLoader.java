@@ -0,0 +1,478 @@
+package com.wiggins.volley.http;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.DisplayMetrics;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.ImageView.ScaleType;
+
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.ImageLoader.ImageCache;
+import com.wiggins.volley.R;
+import com.wiggins.volley.utils.BitmapCache;
+import com.wiggins.volley.utils.BitmapPool;
+import com.wiggins.volley.utils.ThumbnailDiskCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * @Description 按ImageView显示尺寸加载图片的ImageLoader
+ * 图片按目标宽高和ScaleType解码，内存缓存按地址+尺寸+ScaleType区分；相同key进行中的请求只发送一次，
+ * 所有订阅者都取消后才取消请求。设置ThumbnailDiskCache后内存缓存未命中时先在后台线程读取缩放后的图片，
+ * 磁盘中也没有时才发起网络请求。内存缓存为BitmapCache时，bind()显示的图片在解除绑定前不会被复用，
+ * get()返回的图片不知道何时不再显示，不会被复用。所有方法都需要在主线程中调用
+ * @Author 一花一世界
+ */
+public class SizedImageLoader {
+
+    // 预加载只需要把图片放入内存缓存，不需要回调
+    private static final ImageListener PREFETCH_LISTENER = new ImageListener() {
+        @Override
+        public void onResponse(ImageContainer response, boolean isImmediate) {
+        }
+
+        @Override
+        public void onErrorResponse(VolleyError error) {
+        }
+    };
+
+    private final RequestQueue mRequestQueue;
+    private final ImageCache mCache;
+    private final BitmapCache mDisplayCache;//mCache为BitmapCache时记录图片的显示引用，为空时不记录
+    private final Map<String, BatchedImageRequest> mInFlightRequests = new HashMap<>();//进行中的请求，key为缓存key
+    private final Bitmap.Config mDecodeConfig;//解码格式
+    private final BitmapPool mBitmapPool;//解码时复用的图片池，为空时不复用
+    private final ThumbnailDiskCache mThumbnailCache;//缩放后图片的磁盘缓存，为空时不使用
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private ExecutorService mDiskExecutor;//读取磁盘缓存的后台线程
+
+    public interface ImageListener extends Response.ErrorListener {
+        /**
+         * @param response    图片句柄，getBitmap()为空时显示默认图片
+         * @param isImmediate 是否在get()中直接回调（命中内存缓存或开始加载）
+         */
+        void onResponse(ImageContainer response, boolean isImmediate);
+    }
+
+    /**
+     * @param queue        图片请求队列
+     * @param cache        内存缓存
+     * @param decodeConfig 解码格式，示例：Bitmap.Config.RGB_565
+     */
+    public SizedImageLoader(RequestQueue queue, ImageCache cache, Bitmap.Config decodeConfig) {
+        this(queue, cache, decodeConfig, null);
+    }
+
+    /**
+     * @param queue        图片请求队列
+     * @param cache        内存缓存，使用BitmapCache时不再显示的淘汰图片放入BitmapPool
+     * @param decodeConfig 解码格式，示例：Bitmap.Config.RGB_565
+     * @param bitmapPool   解码时复用的图片池
+     */
+    public SizedImageLoader(RequestQueue queue, ImageCache cache, Bitmap.Config decodeConfig, BitmapPool bitmapPool) {
+        this(queue, cache, decodeConfig, bitmapPool, null);
+    }
+
+    /**
+     * @param queue          图片请求队列
+     * @param cache          内存缓存，使用BitmapCache时不再显示的淘汰图片放入BitmapPool
+     * @param decodeConfig   解码格式，示例：Bitmap.Config.RGB_565
+     * @param bitmapPool     解码时复用的图片池
+     * @param thumbnailCache 缩放后图片的磁盘缓存，作为内存缓存的二级缓存
+     */
+    public SizedImageLoader(RequestQueue queue, ImageCache cache, Bitmap.Config decodeConfig, BitmapPool bitmapPool,
+                            ThumbnailDiskCache thumbnailCache) {
+        mRequestQueue = queue;
+        mCache = cache;
+        mDisplayCache = cache instanceof BitmapCache ? (BitmapCache) cache : null;
+        mDecodeConfig = decodeConfig;
+        mBitmapPool = bitmapPool;
+        mThumbnailCache = thumbnailCache;
+        if (thumbnailCache != null) {
+            mDiskExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ThumbnailDiskCache");
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * @Description 加载时显示默认图片，成功后显示图片，失败时显示错误图片
+     */
+    public static ImageListener getImageListener(final ImageView view, final int defaultImageResId, final int errorImageResId) {
+        return new ImageListener() {
+            @Override
+            public void onResponse(ImageContainer response, boolean isImmediate) {
+                if (response.getBitmap() != null) {
+                    view.setImageBitmap(response.getBitmap());
+                } else if (defaultImageResId != 0) {
+                    view.setImageResource(defaultImageResId);
+                }
+            }
+
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                if (errorImageResId != 0) {
+                    view.setImageResource(errorImageResId);
+                }
+            }
+        };
+    }
+
+    /**
+     * @Description 绑定到ImageView的加载，回调时该ImageView已绑定其他加载则丢弃结果，避免复用的行显示错误的图片
+     */
+    private static ImageListener getBoundImageListener(final ImageView view, final int defaultImageResId, final int errorImageResId) {
+        final ImageListener listener = getImageListener(view, defaultImageResId, errorImageResId);
+        return new ImageListener() {
+            @Override
+            public void onResponse(ImageContainer response, boolean isImmediate) {
+                // get()中的直接回调发生在绑定之前
+                if (isImmediate || view.getTag(R.id.tag_image_container) == response) {
+                    listener.onResponse(response, isImmediate);
+                }
+                // 之前绑定的图片在绑定后会被释放并可能被复用，没有默认图片时也不能继续显示
+                if (isImmediate && response.getBitmap() == null && defaultImageResId == 0) {
+                    view.setImageDrawable(null);
+                }
+            }
+
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                listener.onErrorResponse(error);
+            }
+        };
+    }
+
+    /**
+     * @Description 目标宽度：布局中指定的宽度，match_parent或wrap_content时使用屏幕宽度
+     * 不使用测量后的宽度，保证View布局前后得到相同的缓存key
+     */
+    public static int getTargetWidth(ImageView view) {
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        if (params != null && params.width > 0) {
+            return params.width;
+        }
+        DisplayMetrics metrics = view.getResources().getDisplayMetrics();
+        return metrics.widthPixels;
+    }
+
+    /**
+     * @Description 目标高度：布局中指定的高度，match_parent或wrap_content时使用屏幕高度
+     */
+    public static int getTargetHeight(ImageView view) {
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        if (params != null && params.height > 0) {
+            return params.height;
+        }
+        DisplayMetrics metrics = view.getResources().getDisplayMetrics();
+        return metrics.heightPixels;
+    }
+
+    /**
+     * @Description 按ImageView的布局尺寸和ScaleType加载图片
+     */
+    public ImageContainer get(String url, ImageView view, ImageListener listener) {
+        return get(url, listener, getTargetWidth(view), getTargetHeight(view), view.getScaleType());
+    }
+
+    /**
+     * @Description 加载图片，命中内存缓存时直接回调，否则先以空图片回调再发起请求
+     * 返回的图片不会被BitmapPool复用，列表中会被复用的ImageView使用bind()
+     *
+     * @param maxWidth  目标宽度，0表示不限制
+     * @param maxHeight 目标高度，0表示不限制
+     * @param scaleType 显示方式
+     */
+    public ImageContainer get(String url, ImageListener listener, int maxWidth, int maxHeight, ScaleType scaleType) {
+        return load(url, listener, maxWidth, maxHeight, scaleType, false);
+    }
+
+    /**
+     * @param bound 是否绑定到ImageView，绑定时图片在解除绑定后才可能被复用，否则不会被复用
+     */
+    private ImageContainer load(String url, ImageListener listener, int maxWidth, int maxHeight, ScaleType scaleType,
+                                boolean bound) {
+        throwIfNotOnMainThread();
+        String cacheKey = ScaledImageRequest.getCacheKey(url, maxWidth, maxHeight, scaleType);
+
+        ImageContainer container = new ImageContainer(url, cacheKey, listener, bound);
+        Bitmap cachedBitmap = peekBitmap(cacheKey);
+        if (cachedBitmap != null) {
+            container.setBitmap(cachedBitmap);
+            listener.onResponse(container, true);
+            return container;
+        }
+
+        listener.onResponse(container, true);
+        subscribe(container, url, maxWidth, maxHeight, scaleType, cacheKey, Request.Priority.NORMAL);
+        return container;
+    }
+
+    /**
+     * @Description 按ImageView的布局尺寸加载图片并绑定到该ImageView，用于列表中会被复用的ImageView
+     */
+    public ImageContainer bind(String url, ImageView view, int defaultImageResId, int errorImageResId) {
+        return bind(url, view, getTargetWidth(view), getTargetHeight(view), defaultImageResId, errorImageResId);
+    }
+
+    /**
+     * @Description 加载图片并绑定到ImageView，取消该ImageView之前绑定的加载
+     * 先订阅新的加载再取消之前的，重复绑定相同图片时会合并到进行中的请求而不会取消它；之前显示的图片被释放，不再显示后可被复用
+     */
+    public ImageContainer bind(String url, ImageView view, int maxWidth, int maxHeight, int defaultImageResId, int errorImageResId) {
+        ImageContainer previous = (ImageContainer) view.getTag(R.id.tag_image_container);
+        ImageContainer container = load(url, getBoundImageListener(view, defaultImageResId, errorImageResId),
+                maxWidth, maxHeight, view.getScaleType(), true);
+        view.setTag(R.id.tag_image_container, container);
+        if (previous != null) {
+            previous.cancelRequest();
+        }
+        return container;
+    }
+
+    /**
+     * @Description 取消ImageView绑定的加载并释放显示的图片，在列表行被回收时调用
+     * 释放的图片可能被之后的解码复用，ImageView不再显示它
+     */
+    public static void unbind(ImageView view) {
+        ImageContainer previous = (ImageContainer) view.getTag(R.id.tag_image_container);
+        if (previous != null) {
+            view.setTag(R.id.tag_image_container, null);
+            if (previous.getBitmap() != null) {
+                view.setImageDrawable(null);
+            }
+            previous.cancelRequest();
+        }
+    }
+
+    /**
+     * @Description 预加载图片到内存缓存，请求优先级低于正在显示的图片
+     *
+     * @return 已在内存缓存中时返回null，否则返回用于取消预加载的句柄
+     */
+    public ImageContainer prefetch(String url, int maxWidth, int maxHeight, ScaleType scaleType) {
+        throwIfNotOnMainThread();
+        String cacheKey = ScaledImageRequest.getCacheKey(url, maxWidth, maxHeight, scaleType);
+        if (peekBitmap(cacheKey) != null) {
+            return null;
+        }
+        ImageContainer container = new ImageContainer(url, cacheKey, PREFETCH_LISTENER, false);
+        subscribe(container, url, maxWidth, maxHeight, scaleType, cacheKey, Request.Priority.LOW);
+        return container;
+    }
+
+    private void subscribe(ImageContainer container, String url, int maxWidth, int maxHeight, ScaleType scaleType,
+                           String cacheKey, Request.Priority priority) {
+        // 相同图片进行中时只订阅其结果
+        BatchedImageRequest inFlight = mInFlightRequests.get(cacheKey);
+        if (inFlight != null) {
+            inFlight.mContainers.add(container);
+            // 还在读取磁盘缓存时可以提高之后网络请求的优先级，已加入队列的请求无法调整
+            if (priority.ordinal() > inFlight.mPriority.ordinal()) {
+                inFlight.mPriority = priority;
+            }
+            return;
+        }
+
+        BatchedImageRequest batched = new BatchedImageRequest(container, priority);
+        mInFlightRequests.put(cacheKey, batched);
+        if (mThumbnailCache != null) {
+            loadFromDisk(batched, url, maxWidth, maxHeight, scaleType, cacheKey);
+        } else {
+            loadFromNetwork(batched, url, maxWidth, maxHeight, scaleType, cacheKey);
+        }
+    }
+
+    /**
+     * @Description 在后台线程中读取缩放后的图片，回到主线程后命中则直接返回，否则发起网络请求
+     */
+    private void loadFromDisk(final BatchedImageRequest batched, final String url, final int maxWidth, final int maxHeight,
+                              final ScaleType scaleType, final String cacheKey) {
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = mThumbnailCache.get(cacheKey, mDecodeConfig, mBitmapPool);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mInFlightRequests.get(cacheKey) != batched) {
+                            // 所有订阅者都已取消，读取到的图片仍放入内存缓存
+                            if (bitmap != null) {
+                                mCache.putBitmap(cacheKey, bitmap);
+                            }
+                        } else if (bitmap != null) {
+                            onGetImageSuccess(cacheKey, bitmap);
+                        } else {
+                            loadFromNetwork(batched, url, maxWidth, maxHeight, scaleType, cacheKey);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void loadFromNetwork(BatchedImageRequest batched, String url, int maxWidth, int maxHeight,
+                                 ScaleType scaleType, final String cacheKey) {
+        ScaledImageRequest request = new ScaledImageRequest(url, maxWidth, maxHeight, scaleType, mDecodeConfig,
+                new Response.Listener<Bitmap>() {
+                    @Override
+                    public void onResponse(Bitmap response) {
+                        onGetImageSuccess(cacheKey, response);
+                    }
+                }, new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                onGetImageError(cacheKey, error);
+            }
+        });
+        request.setPriority(batched.mPriority);
+        request.setBitmapPool(mBitmapPool);
+        request.setThumbnailCache(mThumbnailCache);
+        // 超时时间按图片所在主机的耗时自适应
+        request.setRetryPolicy(AdaptiveRetryPolicy.forHost(url));
+        batched.mRequest = request;
+        mRequestQueue.add(request);
+    }
+
+    /**
+     * @Description 指定尺寸的图片是否在内存缓存中
+     */
+    public boolean isCached(String url, int maxWidth, int maxHeight, ScaleType scaleType) {
+        throwIfNotOnMainThread();
+        return peekBitmap(ScaledImageRequest.getCacheKey(url, maxWidth, maxHeight, scaleType)) != null;
+    }
+
+    /**
+     * @Description 读取内存缓存，不增加显示引用
+     */
+    private Bitmap peekBitmap(String cacheKey) {
+        return mDisplayCache != null ? mDisplayCache.peekBitmap(cacheKey) : mCache.getBitmap(cacheKey);
+    }
+
+    private void onGetImageSuccess(String cacheKey, Bitmap bitmap) {
+        BatchedImageRequest request = mInFlightRequests.remove(cacheKey);
+        // 先记录显示引用再放入内存缓存，放入时即被淘汰的图片也不会进入BitmapPool
+        if (request != null) {
+            for (ImageContainer container : request.mContainers) {
+                container.setBitmap(bitmap);
+            }
+        }
+        mCache.putBitmap(cacheKey, bitmap);
+        if (request != null) {
+            for (ImageContainer container : request.mContainers) {
+                container.mListener.onResponse(container, false);
+            }
+        }
+    }
+
+    private void onGetImageError(String cacheKey, VolleyError error) {
+        BatchedImageRequest request = mInFlightRequests.remove(cacheKey);
+        if (request != null) {
+            for (ImageContainer container : request.mContainers) {
+                container.mListener.onErrorResponse(error);
+            }
+        }
+    }
+
+    private static void throwIfNotOnMainThread() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            throw new IllegalStateException("SizedImageLoader must be invoked from the main thread.");
+        }
+    }
+
+    /**
+     * @Description 单次加载的句柄
+     */
+    public class ImageContainer {
+
+        private Bitmap mBitmap;
+        private final String mRequestUrl;
+        private final String mCacheKey;
+        private final ImageListener mListener;
+        private final boolean mBound;//是否绑定到ImageView，绑定时取消后释放图片的显示引用
+        private boolean mCanceled;
+
+        ImageContainer(String requestUrl, String cacheKey, ImageListener listener, boolean bound) {
+            mRequestUrl = requestUrl;
+            mCacheKey = cacheKey;
+            mListener = listener;
+            mBound = bound;
+        }
+
+        /**
+         * @Description 设置加载到的图片并记录显示引用，预加载不显示图片
+         */
+        void setBitmap(Bitmap bitmap) {
+            mBitmap = bitmap;
+            if (mDisplayCache == null || mListener == PREFETCH_LISTENER || mCanceled) {
+                return;
+            }
+            if (mBound) {
+                mDisplayCache.acquire(bitmap);
+            } else {
+                mDisplayCache.pin(bitmap);
+            }
+        }
+
+        /**
+         * @Description 取消订阅，没有其他订阅者时取消请求；绑定的加载同时释放图片的显示引用
+         */
+        public void cancelRequest() {
+            if (mCanceled) {
+                return;
+            }
+            mCanceled = true;
+            if (mBound && mBitmap != null && mDisplayCache != null) {
+                mDisplayCache.release(mBitmap);
+            }
+            BatchedImageRequest request = mInFlightRequests.get(mCacheKey);
+            if (request != null && request.mContainers.remove(this) && request.mContainers.isEmpty()) {
+                // 读取磁盘缓存时还没有网络请求，移除后读取结果不再发起请求
+                if (request.mRequest != null) {
+                    request.mRequest.cancel();
+                }
+                mInFlightRequests.remove(mCacheKey);
+            }
+        }
+
+        public Bitmap getBitmap() {
+            return mBitmap;
+        }
+
+        public String getRequestUrl() {
+            return mRequestUrl;
+        }
+    }
+
+    /**
+     * @Description 进行中的请求及其订阅者
+     */
+    private class BatchedImageRequest {
+
+        private Request<?> mRequest;//读取磁盘缓存时为空
+        private Request.Priority mPriority;//网络请求的优先级
+        private final List<ImageContainer> mContainers = new ArrayList<>(2);
+
+        BatchedImageRequest(ImageContainer container, Request.Priority priority) {
+            mContainers.add(container);
+            mPriority = priority;
+        }
+    }
+}
@@ -1,54 +0,0 @@
-package com.wiggins.volley.http;
-
-import com.android.volley.NetworkResponse;
-import com.android.volley.ParseError;
-import com.android.volley.Request;
-import com.android.volley.Response;
-import com.android.volley.Response.ErrorListener;
-import com.android.volley.Response.Listener;
-import com.android.volley.toolbox.HttpHeaderParser;
-
-import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
-
-import java.io.StringReader;
-import java.io.UnsupportedEncodingException;
-
-/**
- * @Description 自定义XMLRequest用于请求XML格式的数据
- * @Author 一花一世界
- */
-public class XMLRequest extends Request<XmlPullParser> {
-
-    private final Listener<XmlPullParser> mListener;
-
-    public XMLRequest(int method, String url, Listener<XmlPullParser> listener, ErrorListener errorListener) {
-        super(method, url, errorListener);
-        mListener = listener;
-    }
-
-    public XMLRequest(String url, Listener<XmlPullParser> listener, ErrorListener errorListener) {
-        this(Method.GET, url, listener, errorListener);
-    }
-
-    @Override
-    protected void deliverResponse(XmlPullParser response) {
-        mListener.onResponse(response);
-    }
-
-    @Override
-    protected Response<XmlPullParser> parseNetworkResponse(NetworkResponse response) {
-        try {
-            String xmlString = new String(response.data, "UTF-8");
-            XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-            XmlPullParser xmlPullParser = factory.newPullParser();
-            xmlPullParser.setInput(new StringReader(xmlString));
-            return Response.success(xmlPullParser, HttpHeaderParser.parseCacheHeaders(response));
-        } catch (UnsupportedEncodingException e) {
-            return Response.error(new ParseError(e));
-        } catch (XmlPullParserException e) {
-            return Response.error(new ParseError(e));
-        }
-    }
-}
@@ -0,0 +1,94 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.Response.ErrorListener;
+import com.android.volley.Response.Listener;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * @Description 自定义XmlRequest<T>用于请求XML格式的数据
+ * 在网络线程中直接从返回的字节流解析，由Mapper将XmlPullParser转换为具体类型，主线程只收到转换后的结果；
+ * 所有请求共用一个XmlPullParserFactory
+ * 使用：
+ * new XmlRequest<List<String>>(url, new XmlRequest.Mapper<List<String>>() {
+ * public List<String> map(XmlPullParser parser) throws XmlPullParserException, IOException { ... }
+ * }, listener, errorListener);
+ * @Author 一花一世界
+ */
+public class XmlRequest<T> extends Request<T> {
+
+    private static XmlPullParserFactory factory;//共用的XmlPullParserFactory
+
+    private final Mapper<T> mMapper;
+    private final Listener<T> mListener;
+
+    /**
+     * @Description 将XML转换为具体类型，在网络线程中执行，parser位于文档开始处
+     */
+    public interface Mapper<T> {
+        T map(XmlPullParser parser) throws XmlPullParserException, IOException;
+    }
+
+    public XmlRequest(int method, String url, Mapper<T> mapper, Listener<T> listener, ErrorListener errorListener) {
+        super(method, url, errorListener);
+        mMapper = mapper;
+        mListener = listener;
+    }
+
+    public XmlRequest(String url, Mapper<T> mapper, Listener<T> listener, ErrorListener errorListener) {
+        this(Method.GET, url, mapper, listener, errorListener);
+    }
+
+    @Override
+    protected void deliverResponse(T response) {
+        mListener.onResponse(response);
+    }
+
+    @Override
+    protected Response<T> parseNetworkResponse(NetworkResponse response) {
+        try {
+            return Response.success(parse(response, mMapper), HttpHeaderParser.parseCacheHeaders(response));
+        } catch (XmlPullParserException e) {
+            return Response.error(new ParseError(e));
+        } catch (IOException e) {
+            return Response.error(new ParseError(e));
+        } catch (IllegalArgumentException e) {
+            return Response.error(new ParseError(e));
+        } catch (IllegalStateException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    /**
+     * @Description 解析返回数据并转换为具体类型
+     */
+    static <T> T parse(NetworkResponse response, Mapper<T> mapper) throws XmlPullParserException, IOException {
+        return mapper.map(newPullParser(response));
+    }
+
+    /**
+     * @Description 在返回的字节数组上创建XmlPullParser，Content-Type没有指定编码时由解析器按XML声明识别
+     */
+    static XmlPullParser newPullParser(NetworkResponse response) throws XmlPullParserException {
+        XmlPullParser parser = getFactory().newPullParser();
+        parser.setInput(new ByteArrayInputStream(response.data), GsonRequest.parseCharset(response.headers, null));
+        return parser;
+    }
+
+    private static synchronized XmlPullParserFactory getFactory() throws XmlPullParserException {
+        if (factory == null) {
+            factory = XmlPullParserFactory.newInstance();
+        }
+        return factory;
+    }
+}
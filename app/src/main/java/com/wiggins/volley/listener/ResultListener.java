@@ -0,0 +1,28 @@
+package com.wiggins.volley.listener;
+
+
+import com.android.volley.VolleyError;
+import com.wiggins.volley.bean.ResultData;
+
+/**
+ * @Description 自定义Http请求回调类，返回数据已在网络线程中解析为具体类型
+ * @Author 一花一世界
+ */
+public abstract class ResultListener<T> {
+
+    /**
+     * Http请求成功时回调
+     *
+     * @param resultData 返回成功信息
+     */
+    public void onSuccess(ResultData<T> resultData) {
+    }
+
+    /**
+     * Http请求失败时回调
+     *
+     * @param volleyError 返回失败信息
+     */
+    public void onFailure(VolleyError volleyError) {
+    }
+}
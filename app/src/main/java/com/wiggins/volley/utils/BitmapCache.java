@@ -5,32 +5,200 @@ import android.util.LruCache;
 
 import com.android.volley.toolbox.ImageLoader;
 
+import java.util.Map;
+import java.util.WeakHashMap;
+
 /**
- * @Description BitmapCache缓存
+ * @Description BitmapCache缓存，进程内唯一，所有ImageLoader共用同一份内存缓存
+ * 被淘汰或移除的图片在不再显示后放入BitmapPool，供之后的解码复用：预加载会在可见行之前放入新图片，被淘汰的图片可能仍在ImageView中显示，
+ * 复用其内存会改写正在显示的内容。SizedImageLoader绑定到ImageView时通过acquire()/release()记录图片的显示引用，
+ * 引用数为0的图片被淘汰时直接放入池中，仍在显示的图片等最后一次release()时再放入；
+ * 通过ImageCache.getBitmap()取出的图片无法得知何时不再显示，不会放入池中
  * @Author 一花一世界
  */
 public class BitmapCache implements ImageLoader.ImageCache {
 
+    private static volatile BitmapCache instance;//进程内唯一实例
+
     private LruCache<String, Bitmap> mCache;
+    private final Map<Bitmap, DisplayRef> mDisplayRefs = new WeakHashMap<>();//正在显示或不能复用的图片，图片被回收后条目随之移除
+    private int mPooledCount;//不再显示后放入BitmapPool的图片数量
+
+    /**
+     * @Description 图片的显示引用
+     */
+    private static class DisplayRef {
+        int count;//绑定到ImageView的次数
+        boolean pinned;//显示位置未知，不能复用
+        boolean removed;//已从内存缓存中移除，引用数为0时放入BitmapPool
+    }
+
+    /**
+     * @Description 获取进程内唯一的BitmapCache，如果为空则创建它
+     */
+    public static BitmapCache getInstance() {
+        if (instance == null) {
+            synchronized (BitmapCache.class) {
+                if (instance == null) {
+                    instance = new BitmapCache();
+                }
+            }
+        }
+        return instance;
+    }
 
-    public BitmapCache() {
-        //缓存图片的大小设置为10M
-        int maxSize = 10 * 1024 * 1024;
+    private BitmapCache() {
+        //缓存图片的大小按设备内存等级计算，普通设备为应用可用内存的1/8
+        int maxSize = MemoryUtils.getBitmapCacheSize();
         mCache = new LruCache<String, Bitmap>(maxSize) {
             @Override
             protected int sizeOf(String key, Bitmap bitmap) {
                 return bitmap.getRowBytes() * bitmap.getHeight();
             }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (oldValue != newValue) {
+                    onRemoved(oldValue);
+                }
+            }
         };
     }
 
+    /**
+     * @Description ImageCache接口，供Volley的ImageLoader使用，取出的图片不会再放入BitmapPool
+     */
     @Override
-    public Bitmap getBitmap(String url) {
-        return mCache.get(url);
+    public synchronized Bitmap getBitmap(String url) {
+        Bitmap bitmap = mCache.get(url);
+        if (bitmap != null) {
+            refOf(bitmap).pinned = true;
+        }
+        return bitmap;
     }
 
     @Override
-    public void putBitmap(String url, Bitmap bitmap) {
+    public synchronized void putBitmap(String url, Bitmap bitmap) {
+        DisplayRef ref = mDisplayRefs.get(bitmap);
+        if (ref != null) {
+            ref.removed = false;
+        }
         mCache.put(url, bitmap);
     }
+
+    /**
+     * @Description 读取缓存中的图片，不增加显示引用，调用方需要显示时调用acquire()
+     */
+    public synchronized Bitmap peekBitmap(String url) {
+        return mCache.get(url);
+    }
+
+    /**
+     * @Description 图片开始在ImageView中显示，需要与release()成对调用
+     */
+    public synchronized void acquire(Bitmap bitmap) {
+        refOf(bitmap).count++;
+    }
+
+    /**
+     * @Description 图片不再在ImageView中显示，已从缓存中移除且没有其他显示引用时放入BitmapPool
+     */
+    public synchronized void release(Bitmap bitmap) {
+        DisplayRef ref = mDisplayRefs.get(bitmap);
+        if (ref == null || --ref.count > 0 || ref.pinned) {
+            return;
+        }
+        mDisplayRefs.remove(bitmap);
+        if (ref.removed) {
+            recycleToPool(bitmap);
+        }
+    }
+
+    /**
+     * @Description 图片不再显示后标记为不能复用，用于显示位置未知的图片
+     */
+    public synchronized void pin(Bitmap bitmap) {
+        refOf(bitmap).pinned = true;
+    }
+
+    private DisplayRef refOf(Bitmap bitmap) {
+        DisplayRef ref = mDisplayRefs.get(bitmap);
+        if (ref == null) {
+            ref = new DisplayRef();
+            mDisplayRefs.put(bitmap, ref);
+        }
+        return ref;
+    }
+
+    /**
+     * @Description 图片被淘汰、移除或替换，没有显示引用时放入BitmapPool，否则等最后一次release()
+     */
+    private void onRemoved(Bitmap bitmap) {
+        DisplayRef ref = mDisplayRefs.get(bitmap);
+        if (ref == null) {
+            recycleToPool(bitmap);
+        } else {
+            ref.removed = true;
+        }
+    }
+
+    private void recycleToPool(Bitmap bitmap) {
+        if (bitmap.isMutable()) {
+            BitmapPool.getInstance().put(bitmap);
+            mPooledCount++;
+        }
+    }
+
+    /**
+     * @Description 按系统内存紧张程度释放缓存，从最久未使用的图片开始移除，移除的图片不再显示后放入BitmapPool
+     *
+     * @param level onTrimMemory()的参数
+     */
+    public synchronized void trimMemory(int level) {
+        int targetSize = (int) (mCache.maxSize() * MemoryUtils.getRetainRatio(level));
+        // LruCache.trimToSize()在API 17以下不可用，这里按snapshot()的使用顺序逐个remove()
+        for (String key : mCache.snapshot().keySet()) {
+            if (mCache.size() <= targetSize) {
+                break;
+            }
+            mCache.remove(key);
+        }
+    }
+
+    /**
+     * @Description 缓存命中次数
+     */
+    public int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    /**
+     * @Description 缓存未命中次数
+     */
+    public int getMissCount() {
+        return mCache.missCount();
+    }
+
+    /**
+     * @Description 缓存被淘汰的图片数量
+     */
+    public int getEvictionCount() {
+        return mCache.evictionCount();
+    }
+
+    /**
+     * @Description 缓存统计信息，用于确认图片是否被重复下载
+     */
+    public synchronized String getStats() {
+        return "BitmapCache{" +
+                "size=" + mCache.size() +
+                ", maxSize=" + mCache.maxSize() +
+                ", hit=" + getHitCount() +
+                ", miss=" + getMissCount() +
+                ", put=" + mCache.putCount() +
+                ", eviction=" + getEvictionCount() +
+                ", pooled=" + mPooledCount +
+                ", referenced=" + mDisplayRefs.size() +
+                '}';
+    }
 }
@@ -0,0 +1,175 @@
+package com.wiggins.volley.utils;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * @Description 可复用的Bitmap池，进程内唯一，按字节数分桶
+ * 只放入确定不会再显示的图片：BitmapCache淘汰且已解除绑定的图片，以及降采样解码后再缩放时的中间图片，
+ * 解码时通过BitmapFactory.Options.inBitmap复用其内存，减少滑动列表时的大块内存分配和GC。
+ * API 19以下只能复用宽高和格式完全相同的图片且inSampleSize必须为1，API 19及以上可复用字节数不小于需要大小的图片。
+ * 池有独立的字节上限，超出时丢弃最早放入的图片（不调用recycle，交给GC回收）
+ * @Author 一花一世界
+ */
+public class BitmapPool {
+
+    private static final int MAX_SIZE_MULTIPLE = 4;//API 19及以上复用时允许的最大字节倍数，避免小图长期占用大图的内存
+
+    private static volatile BitmapPool instance;//进程内唯一实例
+
+    private final TreeMap<Integer, LinkedList<Bitmap>> mBuckets = new TreeMap<>();//按字节数分桶
+    private final LinkedHashSet<Bitmap> mOrder = new LinkedHashSet<>();//按放入顺序排列，超出上限时从最早的开始丢弃
+    private final int mMaxSize;//字节上限
+    private int mSize;//当前字节数
+    private int mHitCount;//复用成功次数
+    private int mMissCount;//没有可复用图片的次数
+    private int mPutCount;//放入次数
+    private int mEvictionCount;//超出上限被丢弃的次数
+
+    /**
+     * @Description 获取进程内唯一的BitmapPool，如果为空则创建它
+     */
+    public static BitmapPool getInstance() {
+        if (instance == null) {
+            synchronized (BitmapPool.class) {
+                if (instance == null) {
+                    //池的大小按设备内存等级计算，普通设备为图片内存缓存的1/2
+                    instance = new BitmapPool(MemoryUtils.getBitmapPoolSize());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param maxSize 字节上限
+     */
+    public BitmapPool(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * @Description 放入一张不再显示的图片，只接受可变且未回收的图片
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        int size = bitmap.getByteCount();
+        if (size > mMaxSize || mOrder.contains(bitmap)) {
+            return;
+        }
+        LinkedList<Bitmap> bucket = mBuckets.get(size);
+        if (bucket == null) {
+            bucket = new LinkedList<>();
+            mBuckets.put(size, bucket);
+        }
+        bucket.addLast(bitmap);
+        mOrder.add(bitmap);
+        mSize += size;
+        mPutCount++;
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * @Description 取出一张可以作为inBitmap解码指定尺寸的图片，没有时返回null
+     *
+     * @param width  解码后的宽度（已按inSampleSize缩小）
+     * @param height 解码后的高度（已按inSampleSize缩小）
+     * @param config 解码格式
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        int size = width * height * getBytesPerPixel(config);
+        Bitmap bitmap = null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            for (Map.Entry<Integer, LinkedList<Bitmap>> entry : mBuckets.subMap(size, true, size * MAX_SIZE_MULTIPLE, true).entrySet()) {
+                bitmap = entry.getValue().peekLast();
+                if (bitmap != null) {
+                    break;
+                }
+            }
+        } else {
+            LinkedList<Bitmap> bucket = mBuckets.get(size);
+            if (bucket != null) {
+                for (Bitmap candidate : bucket) {
+                    if (candidate.getWidth() == width && candidate.getHeight() == height && candidate.getConfig() == config) {
+                        bitmap = candidate;
+                        break;
+                    }
+                }
+            }
+        }
+        if (bitmap == null) {
+            mMissCount++;
+            return null;
+        }
+        remove(bitmap);
+        mHitCount++;
+        return bitmap;
+    }
+
+    /**
+     * @Description 按系统内存紧张程度释放池中的图片
+     *
+     * @param level onTrimMemory()的参数
+     */
+    public synchronized void trimMemory(int level) {
+        trimToSize((int) (mMaxSize * MemoryUtils.getRetainRatio(level)));
+    }
+
+    private void remove(Bitmap bitmap) {
+        int size = bitmap.getByteCount();
+        LinkedList<Bitmap> bucket = mBuckets.get(size);
+        bucket.remove(bitmap);
+        if (bucket.isEmpty()) {
+            mBuckets.remove(size);
+        }
+        mOrder.remove(bitmap);
+        mSize -= size;
+    }
+
+    private void trimToSize(int maxSize) {
+        while (mSize > maxSize && !mOrder.isEmpty()) {
+            remove(mOrder.iterator().next());
+            mEvictionCount++;
+        }
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        } else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        return 4;
+    }
+
+    /**
+     * @Description 复用成功率
+     */
+    public synchronized float getHitRate() {
+        int requests = mHitCount + mMissCount;
+        return requests == 0 ? 0 : (float) mHitCount / requests;
+    }
+
+    /**
+     * @Description 池统计信息，用于确认解码时是否复用了被淘汰图片的内存
+     */
+    public synchronized String getStats() {
+        return "BitmapPool{" +
+                "size=" + mSize +
+                ", maxSize=" + mMaxSize +
+                ", count=" + mOrder.size() +
+                ", hit=" + mHitCount +
+                ", miss=" + mMissCount +
+                ", hitRate=" + getHitRate() +
+                ", put=" + mPutCount +
+                ", eviction=" + mEvictionCount +
+                '}';
+    }
+}
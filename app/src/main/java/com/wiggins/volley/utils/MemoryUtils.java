@@ -0,0 +1,87 @@
+package com.wiggins.volley.utils;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.os.Build;
+
+import com.wiggins.volley.base.BaseApplication;
+
+/**
+ * @Description 按设备内存等级计算图片缓存大小，按系统内存紧张程度计算缓存保留比例
+ * @Author 一花一世界
+ */
+
+public class MemoryUtils {
+
+    private static final int DEFAULT_MEMORY_CLASS = 64;//无法获取内存等级时按64M计算
+    private static final int BITMAP_CACHE_DIVISOR = 8;//图片内存缓存占应用可用内存的1/8
+    private static final int LOW_RAM_BITMAP_CACHE_DIVISOR = 16;//低内存设备占1/16
+    private static final int BITMAP_POOL_DIVISOR = 2;//BitmapPool为图片内存缓存的1/2
+    private static final int LOW_RAM_BITMAP_POOL_DIVISOR = 4;//低内存设备为1/4
+
+    public static Context getContext() {
+        return BaseApplication.getContext();
+    }
+
+    /**
+     * @Description 应用可用的内存大小，单位M
+     */
+    public static int getMemoryClass() {
+        ActivityManager activityManager = getActivityManager();
+        return activityManager == null ? DEFAULT_MEMORY_CLASS : activityManager.getMemoryClass();
+    }
+
+    /**
+     * @Description 是否为低内存设备，API 19以下总是返回false
+     */
+    public static boolean isLowRamDevice() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            return false;
+        }
+        ActivityManager activityManager = getActivityManager();
+        return activityManager != null && activityManager.isLowRamDevice();
+    }
+
+    /**
+     * @Description 图片内存缓存的字节数
+     */
+    public static int getBitmapCacheSize() {
+        int divisor = isLowRamDevice() ? LOW_RAM_BITMAP_CACHE_DIVISOR : BITMAP_CACHE_DIVISOR;
+        return getMemoryClass() * 1024 * 1024 / divisor;
+    }
+
+    /**
+     * @Description BitmapPool的字节数
+     */
+    public static int getBitmapPoolSize() {
+        int divisor = isLowRamDevice() ? LOW_RAM_BITMAP_POOL_DIVISOR : BITMAP_POOL_DIVISOR;
+        return getBitmapCacheSize() / divisor;
+    }
+
+    /**
+     * @Description 收到onTrimMemory()时内存缓存应保留的比例
+     * 进入后台后全部释放，界面不可见时保留一半，前台运行时按紧张程度逐级减少
+     *
+     * @param level onTrimMemory()的参数，onLowMemory()时传入ComponentCallbacks2.TRIM_MEMORY_COMPLETE
+     */
+    public static float getRetainRatio(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return 0f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return 0.5f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0.25f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return 0.5f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return 0.75f;
+        }
+        return 1f;
+    }
+
+    private static ActivityManager getActivityManager() {
+        Context context = getContext();
+        return context == null ? null : (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+    }
+}
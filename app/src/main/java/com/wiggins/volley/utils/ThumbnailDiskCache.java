@@ -0,0 +1,288 @@
+package com.wiggins.volley.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @Description 已缩放图片的磁盘缓存，作为BitmapCache的二级缓存
+ * Volley的磁盘缓存保存的是原图，每次都要从原图降采样解码；这里按“地址+目标尺寸+ScaleType”保存缩放后的图片，
+ * 不透明的图片压缩为JPEG，有透明度的压缩为PNG，读取时按记录的宽高直接解码，不需要先读取尺寸和降采样。
+ * 文件格式：魔数、key、宽、高、压缩后的图片数据。超出缓存大小时按最近使用时间淘汰。
+ * 读写都有磁盘IO，需要在后台线程中调用
+ * @Author 一花一世界
+ */
+public class ThumbnailDiskCache {
+
+    private static final int MAGIC = 0x20170401;//文件标识
+    private static final int JPEG_QUALITY = 90;//JPEG压缩质量
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mRootDirectory;
+    private final long mMaxSizeInBytes;
+    private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<>(64, 0.75f, true);//文件名 -> 字节数，按访问顺序排列
+    private long mTotalSize;//所有文件的字节数
+    private boolean mInitialized;
+    private int mHitCount;//命中次数
+    private int mMissCount;//未命中次数
+    private int mPutCount;//写入次数
+
+    /**
+     * @param rootDirectory  缓存目录
+     * @param maxSizeInBytes 缓存最大字节数
+     */
+    public ThumbnailDiskCache(File rootDirectory, long maxSizeInBytes) {
+        mRootDirectory = rootDirectory;
+        mMaxSizeInBytes = maxSizeInBytes;
+    }
+
+    /**
+     * @Description 读取缩放后的图片，不存在或文件损坏时返回null
+     *
+     * @param key          缓存key，示例：ScaledImageRequest.getCacheKey()
+     * @param decodeConfig 解码格式
+     * @param bitmapPool   解码时复用的图片池，为空时不复用
+     */
+    public Bitmap get(String key, Bitmap.Config decodeConfig, BitmapPool bitmapPool) {
+        String fileName = getFileName(key);
+        synchronized (this) {
+            ensureInitialized();
+            if (mEntries.get(fileName) == null) {
+                mMissCount++;
+                return null;
+            }
+        }
+        File file = new File(mRootDirectory, fileName);
+        Bitmap bitmap = null;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(readFully(file));
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("bad magic");
+            }
+            byte[] storedKey = new byte[buffer.getInt()];
+            buffer.get(storedKey);
+            if (!key.equals(new String(storedKey, UTF_8))) {
+                // 文件名按key的hashCode生成，冲突时视为未命中并由新图片覆盖
+                throw new IOException("key mismatch");
+            }
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            bitmap = decode(buffer.array(), buffer.position(), buffer.remaining(), width, height, decodeConfig, bitmapPool);
+        } catch (IOException e) {
+            LogUtil.e(Constant.LOG_TAG, "ThumbnailDiskCache read " + fileName + " failed: " + e);
+        } catch (RuntimeException e) {
+            LogUtil.e(Constant.LOG_TAG, "ThumbnailDiskCache read " + fileName + " failed: " + e);
+        }
+        synchronized (this) {
+            if (bitmap == null) {
+                mMissCount++;
+                remove(fileName);
+            } else {
+                mHitCount++;
+                file.setLastModified(System.currentTimeMillis());
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * @Description 保存缩放后的图片，已存在时覆盖
+     */
+    public void put(String key, Bitmap bitmap) {
+        String fileName = getFileName(key);
+        File file = new File(mRootDirectory, fileName);
+        File temp = new File(mRootDirectory, fileName + TEMP_SUFFIX);
+        long length;
+        try {
+            synchronized (this) {
+                ensureInitialized();
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(bitmap.getByteCount() / 8);
+            DataOutputStream header = new DataOutputStream(bytes);
+            byte[] keyBytes = key.getBytes(UTF_8);
+            header.writeInt(MAGIC);
+            header.writeInt(keyBytes.length);
+            header.write(keyBytes);
+            header.writeInt(bitmap.getWidth());
+            header.writeInt(bitmap.getHeight());
+            header.flush();
+            if (!bitmap.compress(bitmap.hasAlpha() ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG, JPEG_QUALITY, bytes)) {
+                return;
+            }
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                bytes.writeTo(out);
+            } finally {
+                out.close();
+            }
+            length = bytes.size();
+        } catch (IOException e) {
+            LogUtil.e(Constant.LOG_TAG, "ThumbnailDiskCache write " + fileName + " failed: " + e);
+            temp.delete();
+            return;
+        }
+        synchronized (this) {
+            // 先写临时文件再重命名，读取时不会读到写了一半的文件
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                remove(fileName);
+                return;
+            }
+            Long old = mEntries.put(fileName, length);
+            mTotalSize += length - (old == null ? 0 : old);
+            mPutCount++;
+            trimToSize();
+        }
+    }
+
+    /**
+     * @Description 删除所有缓存文件
+     */
+    public synchronized void clear() {
+        File[] files = mRootDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mEntries.clear();
+        mTotalSize = 0;
+    }
+
+    /**
+     * @Description 缓存统计信息
+     */
+    public synchronized String getStats() {
+        return "ThumbnailDiskCache{" +
+                "count=" + mEntries.size() +
+                ", size=" + mTotalSize +
+                ", maxSize=" + mMaxSizeInBytes +
+                ", hit=" + mHitCount +
+                ", miss=" + mMissCount +
+                ", put=" + mPutCount +
+                '}';
+    }
+
+    /**
+     * @Description 首次使用时扫描缓存目录，按文件修改时间恢复使用顺序
+     */
+    private void ensureInitialized() {
+        if (mInitialized) {
+            return;
+        }
+        mInitialized = true;
+        if (!mRootDirectory.exists() && !mRootDirectory.mkdirs()) {
+            LogUtil.e(Constant.LOG_TAG, "Unable to create thumbnail cache dir " + mRootDirectory.getAbsolutePath());
+            return;
+        }
+        File[] files = mRootDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                file.delete();
+            } else {
+                mEntries.put(file.getName(), file.length());
+                mTotalSize += file.length();
+            }
+        }
+        trimToSize();
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (mTotalSize > mMaxSizeInBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            new File(mRootDirectory, eldest.getKey()).delete();
+            mTotalSize -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private void remove(String fileName) {
+        Long length = mEntries.remove(fileName);
+        if (length != null) {
+            mTotalSize -= length;
+        }
+        new File(mRootDirectory, fileName).delete();
+    }
+
+    private static Bitmap decode(byte[] data, int offset, int length, int width, int height,
+                                 Bitmap.Config decodeConfig, BitmapPool bitmapPool) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = decodeConfig;
+        if (bitmapPool == null) {
+            return BitmapFactory.decodeByteArray(data, offset, length, options);
+        }
+        // 保存的图片不需要降采样，所有版本都可以复用宽高相同的图片
+        options.inMutable = true;
+        options.inBitmap = bitmapPool.get(width, height, decodeConfig);
+        if (options.inBitmap == null) {
+            return BitmapFactory.decodeByteArray(data, offset, length, options);
+        }
+        Bitmap reusable = options.inBitmap;
+        try {
+            Bitmap bitmap = BitmapFactory.decodeByteArray(data, offset, length, options);
+            if (bitmap == null) {
+                bitmapPool.put(reusable);
+            }
+            return bitmap;
+        } catch (IllegalArgumentException e) {
+            options.inBitmap = null;
+            bitmapPool.put(reusable);
+            return BitmapFactory.decodeByteArray(data, offset, length, options);
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] data = new byte[(int) file.length()];
+            int offset = 0;
+            int n;
+            while (offset < data.length && (n = in.read(data, offset, data.length - offset)) != -1) {
+                offset += n;
+            }
+            if (offset != data.length) {
+                throw new IOException("truncated " + offset + "/" + data.length);
+            }
+            return data;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @Description 文件名由key的hashCode生成，与Volley的DiskBasedCache相同，文件中保存完整key用于校验
+     */
+    private static String getFileName(String key) {
+        int firstHalfLength = key.length() / 2;
+        String fileName = String.valueOf(key.substring(0, firstHalfLength).hashCode());
+        fileName += String.valueOf(key.substring(firstHalfLength).hashCode());
+        return fileName;
+    }
+}
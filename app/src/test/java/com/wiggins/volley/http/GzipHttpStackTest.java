@@ -0,0 +1,82 @@
+package com.wiggins.volley.http;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @Description GzipHttpStack响应体解压测试
+ * @Author 一花一世界
+ */
+public class GzipHttpStackTest {
+
+    private static final byte[] BODY = "{\"error_code\":0,\"reason\":\"success\",\"result\":[]}".getBytes(Charset.forName("UTF-8"));
+
+    @Test
+    public void emptyGzipBodyReadsAsEmpty() throws IOException {
+        InputStream in = GzipHttpStack.inflate(new ByteArrayInputStream(new byte[0]), "gzip");
+        assertEquals(0, in.available());
+        assertEquals(-1, in.read(new byte[16], 0, 16));
+        assertEquals(-1, in.read());
+        in.close();
+    }
+
+    @Test
+    public void emptyDeflateBodyReadsAsEmpty() throws IOException {
+        InputStream in = GzipHttpStack.inflate(new ByteArrayInputStream(new byte[0]), "deflate");
+        assertEquals(-1, in.read());
+        in.close();
+    }
+
+    @Test
+    public void gzipBodyIsInflated() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new GZIPOutputStream(bytes);
+        out.write(BODY);
+        out.close();
+        assertArrayEquals(BODY, readFully(GzipHttpStack.inflate(new ByteArrayInputStream(bytes.toByteArray()), "GZIP")));
+    }
+
+    @Test
+    public void deflateBodyIsInflated() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new DeflaterOutputStream(bytes);
+        out.write(BODY);
+        out.close();
+        assertArrayEquals(BODY, readFully(GzipHttpStack.inflate(new ByteArrayInputStream(bytes.toByteArray()), "deflate")));
+    }
+
+    @Test
+    public void responsesWithoutBodyAreNotDecoded() {
+        assertFalse(GzipHttpStack.hasResponseBody(304, -1));
+        assertFalse(GzipHttpStack.hasResponseBody(204, -1));
+        assertFalse(GzipHttpStack.hasResponseBody(100, -1));
+        assertFalse(GzipHttpStack.hasResponseBody(200, 0));
+        assertTrue(GzipHttpStack.hasResponseBody(200, -1));
+        assertTrue(GzipHttpStack.hasResponseBody(200, 42));
+        assertTrue(GzipHttpStack.hasResponseBody(503, -1));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7];
+        int n;
+        while ((n = in.read(buffer, 0, buffer.length)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,108 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.Request;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @Description RequestKey参数排序、编码和缓存key测试
+ * @Author 一花一世界
+ */
+public class RequestKeyTest {
+
+    private static final String URL = "http://v.juhe.cn/todayOnhistory/queryEvent.php";
+
+    @Test
+    public void parameterOrderDoesNotChangeKey() {
+        Map<String, String> first = new LinkedHashMap<>();
+        first.put("key", "abc");
+        first.put("date", "3/1");
+        Map<String, String> second = new LinkedHashMap<>();
+        second.put("date", "3/1");
+        second.put("key", "abc");
+
+        RequestKey a = new RequestKey.Builder(URL).params(first).build();
+        RequestKey b = new RequestKey.Builder(URL).params(second).build();
+        assertEquals(URL + "?date=3%2F1&key=abc", a.getUrl());
+        assertEquals(a.getCacheKey(), b.getCacheKey());
+        assertEquals(a.getUrl(), a.getCacheKey());
+        assertNull(a.getBody());
+    }
+
+    @Test
+    public void reservedCharactersArePercentEncoded() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("q", "a b&c=d/e?f#g+h*i");
+        params.put("safe", "AZaz09-._~");
+        assertEquals(URL + "?q=a%20b%26c%3Dd%2Fe%3Ff%23g%2Bh%2Ai&safe=AZaz09-._~", RequestKey.appendQuery(URL, params));
+    }
+
+    @Test
+    public void nonAsciiCharactersAreEncodedAsUtf8() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("title", "历史😀é");
+        assertEquals(URL + "?title=%E5%8E%86%E5%8F%B2%F0%9F%98%80%C3%A9", RequestKey.appendQuery(URL, params));
+    }
+
+    @Test
+    public void emptyAndNullValuesKeepTheirName() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("b", null);
+        params.put("a", "");
+        assertEquals(URL + "?a=&b=", RequestKey.appendQuery(URL, params));
+    }
+
+    @Test
+    public void emptyParamsLeaveUrlUnchanged() {
+        assertEquals(URL, RequestKey.appendQuery(URL, null));
+        assertEquals(URL, RequestKey.appendQuery(URL, new LinkedHashMap<String, String>()));
+        assertNull(RequestKey.encodeParams(null, null));
+
+        RequestKey post = new RequestKey.Builder(URL).method(Request.Method.POST).build();
+        assertNull(post.getBody());
+        assertEquals(URL, post.getCacheKey());
+    }
+
+    @Test
+    public void paramsAreAppendedToExistingQuery() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("key", "abc");
+        assertEquals(URL + "?dtype=json&key=abc", RequestKey.appendQuery(URL + "?dtype=json", params));
+    }
+
+    @Test
+    public void postKeyIsUrlAndBody() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("key", "abc");
+        params.put("e_id", "1");
+        RequestKey key = new RequestKey.Builder(URL).method(Request.Method.POST).params(params).build();
+        assertEquals(URL, key.getUrl());
+        assertEquals("e_id=1&key=abc", key.getBody());
+        assertEquals(URL + "#e_id=1&key=abc", key.getCacheKey());
+    }
+
+    @Test
+    public void otherMethodsArePrefixedWithMethod() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("key", "abc");
+        RequestKey put = new RequestKey.Builder(URL).method(Request.Method.PUT).params(params).build();
+        assertEquals(Request.Method.PUT + " " + URL + "#key=abc", put.getCacheKey());
+        RequestKey delete = new RequestKey.Builder(URL).method(Request.Method.DELETE).params(params).build();
+        assertEquals(URL + "?key=abc", delete.getUrl());
+        assertEquals(Request.Method.DELETE + " " + URL + "?key=abc", delete.getCacheKey());
+    }
+
+    @Test
+    public void bodyUsesRequestedEncoding() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("q", "中");
+        assertEquals("q=%D6%D0", RequestKey.encodeParams(params, "GBK"));
+        assertEquals("q=%E4%B8%AD", RequestKey.encodeParams(params, null));
+    }
+}
@@ -0,0 +1,210 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.Cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @Description SegmentDiskCache读写、重启、整理和损坏记录测试
+ * @Author 一花一世界
+ */
+public class SegmentDiskCacheTest {
+
+    private static final long MAX_CACHE_BYTES = 1024 * 1024;//段文件大小为256KB
+    private static final int DATA_LENGTH_OFFSET = 41;//key为"k"、etag为null、没有响应头时数据长度在记录中的偏移量
+    private static final int HEADER_COUNT_OFFSET = 37;
+    private static final int KEY_LENGTH_OFFSET = 4;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void putThenGetReturnsSameEntry() throws IOException {
+        SegmentDiskCache cache = newCache(mFolder.getRoot());
+        Cache.Entry entry = newEntry(100, (byte) 1);
+        entry.etag = "\"abc\"";
+        entry.serverDate = 1488326400000L;
+        entry.ttl = 2000000000000L;
+        entry.softTtl = 1900000000000L;
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json; charset=utf-8");
+        headers.put("ETag", "\"abc\"");
+        entry.responseHeaders = headers;
+        cache.put("http://v.juhe.cn/todayOnhistory/queryEvent.php", entry);
+
+        Cache.Entry read = cache.get("http://v.juhe.cn/todayOnhistory/queryEvent.php");
+        assertNotNull(read);
+        assertEquals(entry.etag, read.etag);
+        assertEquals(entry.serverDate, read.serverDate);
+        assertEquals(entry.ttl, read.ttl);
+        assertEquals(entry.softTtl, read.softTtl);
+        assertEquals(headers, read.responseHeaders);
+        assertArrayEquals(entry.data, read.data);
+        assertNull(cache.get("missing"));
+    }
+
+    @Test
+    public void putReplacesOldEntry() throws IOException {
+        SegmentDiskCache cache = newCache(mFolder.getRoot());
+        cache.put("k", newEntry(10, (byte) 1));
+        cache.put("k", newEntry(20, (byte) 2));
+        assertEquals(1, cache.size());
+        assertArrayEquals(newEntry(20, (byte) 2).data, cache.get("k").data);
+        cache.remove("k");
+        assertNull(cache.get("k"));
+    }
+
+    @Test
+    public void indexIsReloadedAfterRestart() throws IOException {
+        File root = mFolder.getRoot();
+        SegmentDiskCache cache = newCache(root);
+        for (int i = 0; i < 10; i++) {
+            cache.put("key-" + i, newEntry(1000 + i, (byte) i));
+        }
+        cache.remove("key-3");
+        cache.flush();
+
+        SegmentDiskCache reopened = newCache(root);
+        assertEquals(9, reopened.size());
+        assertNull(reopened.get("key-3"));
+        for (int i = 0; i < 10; i++) {
+            if (i != 3) {
+                assertArrayEquals(newEntry(1000 + i, (byte) i).data, reopened.get("key-" + i).data);
+            }
+        }
+
+        // 过期时间只保存在索引中，重启后也要生效
+        reopened.invalidate("key-0", true);
+        reopened.flush();
+        Cache.Entry expired = newCache(root).get("key-0");
+        assertNotNull(expired);
+        assertEquals(0, expired.ttl);
+        assertEquals(0, expired.softTtl);
+    }
+
+    @Test
+    public void garbageIndexResetsCache() throws IOException {
+        File root = mFolder.getRoot();
+        SegmentDiskCache cache = newCache(root);
+        cache.put("k", newEntry(100, (byte) 1));
+        cache.flush();
+
+        FileOutputStream out = new FileOutputStream(new File(root, "index"));
+        try {
+            out.write(new byte[]{0x12, 0x34, 0x56, 0x78, 0x00, 0x00, 0x00, 0x01});
+        } finally {
+            out.close();
+        }
+
+        SegmentDiskCache reopened = newCache(root);
+        assertEquals(0, reopened.size());
+        assertNull(reopened.get("k"));
+        reopened.put("k", newEntry(50, (byte) 2));
+        assertArrayEquals(newEntry(50, (byte) 2).data, reopened.get("k").data);
+    }
+
+    @Test
+    public void sparseSegmentIsCompacted() throws Exception {
+        File root = mFolder.getRoot();
+        SegmentDiskCache cache = newCache(root);
+        // 每条约20KB，前13条写满segment-0，第14条写入segment-1
+        for (int i = 0; i < 14; i++) {
+            cache.put("key-" + i, newEntry(20000, (byte) i));
+        }
+        File first = new File(root, "segment-0");
+        assertNotNull(cache.get("key-0"));
+        for (int i = 0; i < 8; i++) {
+            cache.remove("key-" + i);
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (first.exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(first.exists());
+        assertEquals(6, cache.size());
+        for (int i = 0; i < 14; i++) {
+            if (i < 8) {
+                assertNull(cache.get("key-" + i));
+            } else {
+                assertArrayEquals(newEntry(20000, (byte) i).data, cache.get("key-" + i).data);
+            }
+        }
+
+        // 整理后的位置也要写入索引
+        cache.flush();
+        SegmentDiskCache reopened = newCache(root);
+        assertEquals(6, reopened.size());
+        assertArrayEquals(newEntry(20000, (byte) 8).data, reopened.get("key-8").data);
+    }
+
+    @Test
+    public void corruptDataLengthIsRejected() throws IOException {
+        assertCorruptRecordRemoved(DATA_LENGTH_OFFSET);
+    }
+
+    @Test
+    public void corruptHeaderCountIsRejected() throws IOException {
+        assertCorruptRecordRemoved(HEADER_COUNT_OFFSET);
+    }
+
+    @Test
+    public void corruptKeyLengthIsRejected() throws IOException {
+        assertCorruptRecordRemoved(KEY_LENGTH_OFFSET);
+    }
+
+    /**
+     * @Description 把第一条记录中指定偏移量的长度字段改为极大值，读取时应返回null并删除该记录，而不是分配极大的数组
+     */
+    private void assertCorruptRecordRemoved(int offset) throws IOException {
+        File root = mFolder.getRoot();
+        SegmentDiskCache cache = newCache(root);
+        cache.put("k", newEntry(100, (byte) 1));
+        cache.put("other", newEntry(100, (byte) 2));
+
+        RandomAccessFile raf = new RandomAccessFile(new File(root, "segment-0"), "rw");
+        try {
+            raf.seek(offset);
+            raf.writeInt(Integer.MAX_VALUE);
+        } finally {
+            raf.close();
+        }
+
+        assertNull(cache.get("k"));
+        assertEquals(1, cache.size());
+        assertArrayEquals(newEntry(100, (byte) 2).data, cache.get("other").data);
+    }
+
+    private static SegmentDiskCache newCache(File root) {
+        SegmentDiskCache cache = new SegmentDiskCache(root, MAX_CACHE_BYTES);
+        cache.initialize();
+        return cache;
+    }
+
+    private static Cache.Entry newEntry(int length, byte fill) {
+        Cache.Entry entry = new Cache.Entry();
+        entry.data = new byte[length];
+        Arrays.fill(entry.data, fill);
+        entry.ttl = Long.MAX_VALUE;
+        entry.softTtl = Long.MAX_VALUE;
+        entry.responseHeaders = Collections.emptyMap();
+        return entry;
+    }
+}
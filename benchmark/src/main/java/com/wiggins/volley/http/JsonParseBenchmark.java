@@ -0,0 +1,116 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.NetworkResponse;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.wiggins.volley.bean.ResultData;
+import com.wiggins.volley.bean.ResultDesc;
+import com.wiggins.volley.bean.TodayHistoryQuery;
+import com.wiggins.volley.bean.TodayHistoryQueryDetail;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Description 接口返回数据的解析耗时，对比原来的JSONObject/JSONArray逐条解析与GsonRequest、ResultRequest的流式解析
+ * @Author 一花一世界
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonParseBenchmark {
+
+    private static final Map<String, String> JSON_HEADERS = Collections.singletonMap("Content-Type", "application/json;charset=utf-8");
+
+    private NetworkResponse mEventResponse;
+    private NetworkResponse mDetailResponse;
+    private String mEventString;
+    private Gson mLegacyGson;
+    private TypeAdapter<List<TodayHistoryQuery>> mEventAdapter;
+    private TypeAdapter<List<TodayHistoryQueryDetail>> mDetailAdapter;
+    private TypeAdapter<ResultData<List<TodayHistoryQuery>>> mEnvelopeAdapter;
+
+    @Setup
+    public void setUp() throws UnsupportedEncodingException {
+        byte[] event = Payloads.load(Payloads.QUERY_EVENT);
+        mEventResponse = new NetworkResponse(200, event, JSON_HEADERS, false);
+        mDetailResponse = new NetworkResponse(200, Payloads.load(Payloads.QUERY_DETAIL), JSON_HEADERS, false);
+        mEventString = new String(event, "UTF-8");
+        mLegacyGson = new Gson();
+        Gson gson = GsonRequest.getGson();
+        mEventAdapter = gson.getAdapter(new TypeToken<List<TodayHistoryQuery>>() {
+        });
+        mDetailAdapter = gson.getAdapter(new TypeToken<List<TodayHistoryQueryDetail>>() {
+        });
+        mEnvelopeAdapter = gson.getAdapter(new TypeToken<ResultData<List<TodayHistoryQuery>>>() {
+        });
+    }
+
+    /**
+     * @Description HttpRequestUtil.getReturnData：解析外层的返回码、返回说明，result保留为字符串
+     */
+    @Benchmark
+    public ResultDesc getReturnData() throws JSONException {
+        return ResultDescParser.parse(mEventString);
+    }
+
+    /**
+     * @Description 原MainActivity的解析方式：getReturnData之后再用JSONArray逐条取出并调用gson.fromJson
+     */
+    @Benchmark
+    public List<TodayHistoryQuery> legacyJsonArrayLoop() throws JSONException {
+        ResultDesc resultDesc = ResultDescParser.parse(mEventString);
+        JSONArray jsonArray = new JSONArray(resultDesc.getResult());
+        List<TodayHistoryQuery> list = new ArrayList<>(jsonArray.length());
+        for (int i = 0; i < jsonArray.length(); i++) {
+            list.add(mLegacyGson.fromJson(jsonArray.getJSONObject(i).toString(), TodayHistoryQuery.class));
+        }
+        return list;
+    }
+
+    /**
+     * @Description GsonRequest的解析方式：直接从返回的字节流解析整个返回数据
+     */
+    @Benchmark
+    public ResultData<List<TodayHistoryQuery>> gsonRequestDecode() throws IOException {
+        return mEnvelopeAdapter.read(GsonRequest.newJsonReader(mEventResponse));
+    }
+
+    /**
+     * @Description ResultRequest的解析方式：一次流式解析返回码、返回说明和result
+     */
+    @Benchmark
+    public ResultData<List<TodayHistoryQuery>> resultRequestDecode() throws IOException {
+        return ResultRequest.readResultData(GsonRequest.newJsonReader(mEventResponse), mEventAdapter);
+    }
+
+    /**
+     * @Description ResultRequest解析包含长文本和图片列表的事件详情
+     */
+    @Benchmark
+    public ResultData<List<TodayHistoryQueryDetail>> resultRequestDecodeDetail() throws IOException {
+        return ResultRequest.readResultData(GsonRequest.newJsonReader(mDetailResponse), mDetailAdapter);
+    }
+}
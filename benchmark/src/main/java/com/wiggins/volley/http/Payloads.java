@@ -0,0 +1,42 @@
+package com.wiggins.volley.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * @Description 读取基准测试使用的接口返回数据，位于resources/payloads目录
+ * @Author 一花一世界
+ */
+final class Payloads {
+
+    static final String QUERY_EVENT = "queryEvent.json";//历史上的今天 - 事件列表
+    static final String QUERY_DETAIL = "queryDetail.json";//历史上的今天 - 事件详情
+    static final String CHINA_XML = "china.xml";//全国城市天气
+
+    private Payloads() {
+    }
+
+    static byte[] load(String name) {
+        InputStream in = Payloads.class.getResourceAsStream("/payloads/" + name);
+        if (in == null) {
+            throw new IllegalArgumentException("Payload not found: " + name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.wiggins.volley.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Description 请求参数拼接的耗时，对比原来按HashMap顺序直接拼接与RequestKey排序并编码
+ * @Author 一花一世界
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryStringBenchmark {
+
+    private static final String URL = "http://v.juhe.cn/todayOnhistory/queryEvent.php";
+
+    private Map<String, String> mParams;
+
+    @Setup
+    public void setUp() {
+        mParams = new HashMap<>();
+        mParams.put("key", "0123456789abcdef0123456789abcdef");
+        mParams.put("date", "10/1");
+        mParams.put("e_id", "1000");
+        mParams.put("keyword", "中华人民共和国");
+    }
+
+    /**
+     * @Description 原HttpRequestUtil.appendParams的实现
+     */
+    @Benchmark
+    public String legacyConcat() {
+        String url = URL;
+        StringBuilder sb = new StringBuilder();
+        boolean isFirst = true;
+        for (String key : mParams.keySet()) {
+            if (isFirst) {
+                sb.append(key + "=" + mParams.get(key));
+                isFirst = false;
+            } else {
+                sb.append("&" + key + "=" + mParams.get(key));
+            }
+        }
+        url += "?" + sb.toString();
+        return url;
+    }
+
+    @Benchmark
+    public String appendQuery() {
+        return RequestKey.appendQuery(URL, mParams);
+    }
+
+    /**
+     * @Description POST请求生成请求体和缓存key
+     */
+    @Benchmark
+    public String postCacheKey() {
+        return new RequestKey.Builder(URL).method(com.android.volley.Request.Method.POST).params(mParams).build().getCacheKey();
+    }
+}
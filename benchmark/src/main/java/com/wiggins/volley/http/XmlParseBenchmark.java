@@ -0,0 +1,98 @@
+package com.wiggins.volley.http;
+
+import com.android.volley.NetworkResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Description XmlRequest解析china.xml的耗时，对比原XMLRequest先拷贝成String并每次创建XmlPullParserFactory的方式
+ * @Author 一花一世界
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XmlParseBenchmark {
+
+    private static final XmlRequest.Mapper<String> CITY_MAPPER = new XmlRequest.Mapper<String>() {
+        @Override
+        public String map(XmlPullParser parser) throws XmlPullParserException, IOException {
+            return readCities(parser);
+        }
+    };
+
+    private NetworkResponse mResponse;
+
+    @Setup
+    public void setUp() {
+        mResponse = new NetworkResponse(200, Payloads.load(Payloads.CHINA_XML),
+                Collections.singletonMap("Content-Type", "text/xml;charset=utf-8"), false);
+    }
+
+    /**
+     * @Description 原XMLRequest.parseNetworkResponse：拷贝成String，每次创建XmlPullParserFactory
+     */
+    @Benchmark
+    public XmlPullParser legacyNewPullParser() throws IOException, XmlPullParserException {
+        String xmlString = new String(mResponse.data, "UTF-8");
+        XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+        XmlPullParser xmlPullParser = factory.newPullParser();
+        xmlPullParser.setInput(new StringReader(xmlString));
+        return xmlPullParser;
+    }
+
+    @Benchmark
+    public XmlPullParser newPullParser() throws XmlPullParserException {
+        return XmlRequest.newPullParser(mResponse);
+    }
+
+    /**
+     * @Description 原方式创建XmlPullParser后读取所有城市名称
+     */
+    @Benchmark
+    public String legacyParseCities() throws IOException, XmlPullParserException {
+        return readCities(legacyNewPullParser());
+    }
+
+    /**
+     * @Description XmlRequest从字节流解析并读取所有城市名称
+     */
+    @Benchmark
+    public String parseCities() throws IOException, XmlPullParserException {
+        return XmlRequest.parse(mResponse, CITY_MAPPER);
+    }
+
+    private static String readCities(XmlPullParser parser) throws IOException, XmlPullParserException {
+        StringBuilder sb = new StringBuilder();
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG && "city".equals(parser.getName())) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(parser.getAttributeValue(null, "cityname"));
+            }
+            eventType = parser.next();
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,35 @@
+package android.net;
+
+import java.net.URI;
+
+/**
+ * @Description JVM中运行请求代码使用的Uri，只实现解析主机名
+ * @Author 一花一世界
+ */
+public class Uri {
+
+    private final URI mUri;
+
+    private Uri(URI uri) {
+        mUri = uri;
+    }
+
+    public static Uri parse(String uriString) {
+        URI uri;
+        try {
+            uri = URI.create(uriString);
+        } catch (IllegalArgumentException e) {
+            uri = null;
+        }
+        return new Uri(uri);
+    }
+
+    public String getHost() {
+        return mUri == null ? null : mUri.getHost();
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(mUri);
+    }
+}
@@ -0,0 +1,20 @@
+package android.os;
+
+/**
+ * @Description JVM中运行请求代码使用的Process，设置线程优先级不做处理
+ * @Author 一花一世界
+ */
+public class Process {
+
+    public static final int THREAD_PRIORITY_DEFAULT = 0;
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+    public static final int THREAD_PRIORITY_MORE_FAVORABLE = -1;
+    public static final int THREAD_PRIORITY_LESS_FAVORABLE = 1;
+
+    public static void setThreadPriority(int priority) {
+    }
+
+    public static int myTid() {
+        return (int) Thread.currentThread().getId();
+    }
+}
@@ -0,0 +1,27 @@
+package android.os;
+
+/**
+ * @Description JVM中运行请求代码使用的SystemClock，只实现请求代码调用的方法
+ * @Author 一花一世界
+ */
+public final class SystemClock {
+
+    private SystemClock() {
+    }
+
+    public static long elapsedRealtime() {
+        return System.nanoTime() / 1000000;
+    }
+
+    public static long uptimeMillis() {
+        return elapsedRealtime();
+    }
+
+    public static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package android.text;
+
+/**
+ * @Description JVM中运行请求代码使用的TextUtils
+ * @Author 一花一世界
+ */
+public class TextUtils {
+
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+}
@@ -0,0 +1,491 @@
+package com.wiggins.volley.loadtest;
+
+import com.android.volley.Cache;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.google.gson.reflect.TypeToken;
+import com.wiggins.volley.bean.ResultData;
+import com.wiggins.volley.bean.TodayHistoryQuery;
+import com.wiggins.volley.bean.TodayHistoryQueryDetail;
+import com.wiggins.volley.http.AdaptiveRetryPolicy;
+import com.wiggins.volley.http.CachePolicy;
+import com.wiggins.volley.http.CircuitBreaker;
+import com.wiggins.volley.http.LatencyHistogram;
+import com.wiggins.volley.http.RequestKey;
+import com.wiggins.volley.http.RequestMetrics;
+import com.wiggins.volley.http.RequestQueueBuilder;
+import com.wiggins.volley.http.ResultRequest;
+import com.wiggins.volley.http.SegmentDiskCache;
+import com.wiggins.volley.http.SingleFlight;
+import com.wiggins.volley.utils.Constant;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Description 请求队列的压力测试：启动本地回放服务器，按HttpRequestUtil的配置创建接口和图片两个请求队列，
+ * 以固定并发数发起事件列表、事件详情和图片请求，统计吞吐量、耗时分布、错误、缓存命中和相同请求合并的情况
+ * 同一组请求先在空缓存下运行一轮，再在已有缓存下运行一轮，最后输出RequestMetrics的分阶段报告
+ * 参数格式为key=value，示例：requests=2000 concurrency=16 latency=80 jitter=40 distinct=50 policy=app
+ * @Author 一花一世界
+ */
+public class LoadTest {
+
+    private static final Type QUERY_TYPE = new TypeToken<List<TodayHistoryQuery>>() {
+    }.getType();
+    private static final Type DETAIL_TYPE = new TypeToken<List<TodayHistoryQueryDetail>>() {
+    }.getType();
+
+    private final Options mOptions;
+    private final ReplayServer mServer;
+    private final File mCacheDir;
+    private final SingleFlight mSingleFlight = new SingleFlight();
+    private final CircuitBreaker mCircuitBreaker = new CircuitBreaker();
+    private final RequestMetrics mMetrics = new RequestMetrics();
+    private final ExecutorService mMainThread;//模拟主线程，回调在同一个线程中依次执行
+    private final CountingCache mRequestCache;
+    private final CountingCache mImageCache;
+    private final RequestQueue mRequestQueue;
+    private final RequestQueue mImageQueue;
+
+    public LoadTest(Options options) throws IOException {
+        mOptions = options;
+        mServer = new ReplayServer(options.latencyMs, options.jitterMs, options.errorRate);
+        mServer.start();
+        mCacheDir = File.createTempFile("volley-loadtest", "");
+        if (!mCacheDir.delete() || !mCacheDir.mkdirs()) {
+            throw new IOException("Unable to create cache dir " + mCacheDir);
+        }
+        mMainThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "main");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mRequestCache = new CountingCache(new SegmentDiskCache(new File(mCacheDir, "http-cache"), 5 * 1024 * 1024));
+        mImageCache = new CountingCache(new SegmentDiskCache(new File(mCacheDir, "image-cache"), 20 * 1024 * 1024));
+        // 与HttpRequestUtil.getRequestQueue()和getImageQueue()的配置一致，结果分发到模拟的主线程
+        mRequestQueue = new RequestQueueBuilder(null)
+                .threadPoolSize(options.threads)
+                .cache(mRequestCache)
+                .circuitBreaker(mCircuitBreaker)
+                .metrics(mMetrics)
+                .deliveryExecutor(mMainThread)
+                .build();
+        mImageQueue = new RequestQueueBuilder(null)
+                .threadPoolSize(options.imageThreads)
+                .cache(mImageCache)
+                .circuitBreaker(mCircuitBreaker)
+                .metrics(mMetrics)
+                .deliveryExecutor(mMainThread)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        LoadTest loadTest = new LoadTest(options);
+        int failed;
+        try {
+            System.out.println(options);
+            System.out.println("server " + loadTest.mServer.getBaseUrl());
+            failed = loadTest.run("cold cache");
+            failed += loadTest.run("warm cache");
+            System.out.println("== metrics ==");
+            System.out.print(loadTest.mMetrics.getReport());
+        } finally {
+            loadTest.shutdown();
+        }
+        // 服务器没有返回错误时，任何失败的请求都视为回归
+        System.exit(options.errorRate <= 0 && failed > 0 ? 1 : 0);
+    }
+
+    /**
+     * @Description 运行一轮压力测试并输出结果，返回失败的请求数
+     */
+    public int run(String name) throws InterruptedException {
+        mServer.resetHits();
+        mRequestCache.reset();
+        mImageCache.reset();
+        final Round round = new Round(mOptions.requests);
+        final AtomicInteger next = new AtomicInteger();
+        Thread[] workers = new Thread[mOptions.concurrency];
+        long start = System.nanoTime();
+        for (int i = 0; i < workers.length; i++) {
+            final Random random = new Random(mOptions.seed + i);
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (next.getAndIncrement() < mOptions.requests) {
+                        execute(round, random);
+                    }
+                }
+            }, "load-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        round.print(name, elapsedNanos);
+        return round.getFailed();
+    }
+
+    /**
+     * @Description 按比例发起一个图片、事件列表或事件详情请求，等待首次回调后返回
+     */
+    private void execute(Round round, Random random) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicLong failed = new AtomicLong();
+        final String[] errorName = new String[1];
+        Response.ErrorListener errorListener = new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                errorName[0] = error.getClass().getSimpleName();
+                failed.incrementAndGet();
+                latch.countDown();
+            }
+        };
+        String base = mServer.getBaseUrl();
+        int id = random.nextInt(mOptions.distinct);
+        LatencyHistogram histogram;
+        long start = System.nanoTime();
+        if (random.nextDouble() < mOptions.imageRatio) {
+            histogram = round.mImage;
+            round.mImageRequests.incrementAndGet();
+            ImageBytesRequest request = new ImageBytesRequest(base + ReplayServer.IMAGE + id + ".jpg", new Response.Listener<byte[]>() {
+                @Override
+                public void onResponse(byte[] response) {
+                    latch.countDown();
+                }
+            }, errorListener);
+            request.setRetryPolicy(new AdaptiveRetryPolicy(request.getUrl()));
+            mImageQueue.add(request);
+        } else {
+            histogram = round.mApi;
+            round.mApiRequests.incrementAndGet();
+            Response.Listener<Object> listener = new Response.Listener<Object>() {
+                @Override
+                public void onResponse(Object response) {
+                    latch.countDown();
+                }
+            };
+            Map<String, String> params = new HashMap<>();
+            params.put("key", Constant.APP_KEY);
+            if (random.nextBoolean()) {
+                params.put("date", (id % 12 + 1) + "/" + (id / 12 % 28 + 1));
+                addResult(base + ReplayServer.QUERY_EVENT, params, QUERY_TYPE, mOptions.getQueryPolicy(), listener, errorListener);
+            } else {
+                params.put("e_id", String.valueOf(1000 + id));
+                addResult(base + ReplayServer.QUERY_DETAIL, params, DETAIL_TYPE, mOptions.getDetailPolicy(), listener, errorListener);
+            }
+        }
+        try {
+            if (!latch.await(mOptions.timeoutMs, TimeUnit.MILLISECONDS)) {
+                round.onError("Timeout");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        histogram.record((System.nanoTime() - start) / 1000);
+        if (failed.get() > 0) {
+            round.onError(errorName[0]);
+        }
+    }
+
+    /**
+     * @Description 与HttpRequestUtil.getResult()相同的请求方式
+     */
+    @SuppressWarnings("unchecked")
+    private void addResult(String url, Map<String, String> params, Type type, CachePolicy cachePolicy,
+                           Response.Listener<?> listener, Response.ErrorListener errorListener) {
+        ResultRequest<Object> request = new ResultRequest<>(RequestKey.appendQuery(url, params), type,
+                (Response.Listener<ResultData<Object>>) listener, errorListener);
+        request.setCachePolicy(cachePolicy);
+        request.setRetryPolicy(new AdaptiveRetryPolicy(request.getUrl()));
+        mSingleFlight.add(mRequestQueue, request);
+    }
+
+    private void shutdown() {
+        mRequestQueue.stop();
+        mImageQueue.stop();
+        mServer.stop();
+        mMainThread.shutdownNow();
+        delete(mCacheDir);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * @Description 一轮测试的统计
+     */
+    private class Round {
+
+        final LatencyHistogram mApi = new LatencyHistogram();//接口请求耗时（微秒）
+        final LatencyHistogram mImage = new LatencyHistogram();//图片请求耗时（微秒）
+        final AtomicLong mApiRequests = new AtomicLong();
+        final AtomicLong mImageRequests = new AtomicLong();
+        final Map<String, Integer> mErrors = new TreeMap<>();//按错误类型统计
+        final int mRequests;
+
+        Round(int requests) {
+            mRequests = requests;
+        }
+
+        synchronized void onError(String name) {
+            Integer count = mErrors.get(name);
+            mErrors.put(name, count == null ? 1 : count + 1);
+        }
+
+        synchronized int getFailed() {
+            int failed = 0;
+            for (Integer count : mErrors.values()) {
+                failed += count;
+            }
+            return failed;
+        }
+
+        void print(String name, long elapsedNanos) {
+            double seconds = elapsedNanos / 1e9;
+            System.out.println("== " + name + " ==");
+            System.out.println(String.format(Locale.US, "requests=%d elapsed=%.2fs throughput=%.1f req/s failed=%d %s",
+                    mRequests, seconds, mRequests / seconds, getFailed(), mErrors));
+            System.out.println("api   " + mApi);
+            System.out.println("image " + mImage);
+            long apiRequests = mApiRequests.get();
+            long imageRequests = mImageRequests.get();
+            // 每个加入队列的请求都会读取一次缓存，没有加入队列的是合并到了进行中的相同请求
+            System.out.println(String.format(Locale.US, "api   requests=%d joined=%d %s serverHits=%d",
+                    apiRequests, apiRequests - mRequestCache.getGets(), mRequestCache,
+                    mServer.getHits(ReplayServer.QUERY_EVENT) + mServer.getHits(ReplayServer.QUERY_DETAIL)));
+            System.out.println(String.format(Locale.US, "image requests=%d %s serverHits=%d",
+                    imageRequests, mImageCache, mServer.getHits(ReplayServer.IMAGE)));
+        }
+    }
+
+    /**
+     * @Description 统计读取结果的Cache：新鲜、需要刷新、已过期和未命中
+     */
+    static class CountingCache implements Cache {
+
+        private final Cache mCache;
+        private final AtomicLong mGets = new AtomicLong();
+        private final AtomicLong mFresh = new AtomicLong();
+        private final AtomicLong mSoftExpired = new AtomicLong();
+        private final AtomicLong mExpired = new AtomicLong();
+        private final AtomicLong mMisses = new AtomicLong();
+
+        CountingCache(Cache cache) {
+            mCache = cache;
+        }
+
+        long getGets() {
+            return mGets.get();
+        }
+
+        void reset() {
+            mGets.set(0);
+            mFresh.set(0);
+            mSoftExpired.set(0);
+            mExpired.set(0);
+            mMisses.set(0);
+        }
+
+        @Override
+        public Entry get(String key) {
+            Entry entry = mCache.get(key);
+            mGets.incrementAndGet();
+            if (entry == null) {
+                mMisses.incrementAndGet();
+            } else if (entry.isExpired()) {
+                mExpired.incrementAndGet();
+            } else if (entry.refreshNeeded()) {
+                mSoftExpired.incrementAndGet();
+            } else {
+                mFresh.incrementAndGet();
+            }
+            return entry;
+        }
+
+        @Override
+        public void put(String key, Entry entry) {
+            mCache.put(key, entry);
+        }
+
+        @Override
+        public void initialize() {
+            mCache.initialize();
+        }
+
+        @Override
+        public void invalidate(String key, boolean fullExpire) {
+            mCache.invalidate(key, fullExpire);
+        }
+
+        @Override
+        public void remove(String key) {
+            mCache.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            mCache.clear();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "cache gets=%d fresh=%d soft=%d expired=%d miss=%d",
+                    mGets.get(), mFresh.get(), mSoftExpired.get(), mExpired.get(), mMisses.get());
+        }
+    }
+
+    /**
+     * @Description 只下载不解码的图片请求，JVM中没有BitmapFactory，用于测试图片队列的调度和缓存
+     */
+    static class ImageBytesRequest extends Request<byte[]> {
+
+        private final Response.Listener<byte[]> mListener;
+
+        ImageBytesRequest(String url, Response.Listener<byte[]> listener, Response.ErrorListener errorListener) {
+            super(Method.GET, url, errorListener);
+            mListener = listener;
+        }
+
+        @Override
+        public Priority getPriority() {
+            return Priority.LOW;
+        }
+
+        @Override
+        protected Response<byte[]> parseNetworkResponse(NetworkResponse response) {
+            return Response.success(response.data, HttpHeaderParser.parseCacheHeaders(response));
+        }
+
+        @Override
+        protected void deliverResponse(byte[] response) {
+            mListener.onResponse(response);
+        }
+    }
+
+    /**
+     * @Description 命令行参数
+     */
+    static class Options {
+
+        int requests = 2000;//每轮请求数
+        int concurrency = 16;//并发数
+        int latencyMs = 80;//服务器响应延迟
+        int jitterMs = 40;//延迟的随机抖动上限
+        double errorRate;//服务器返回503的比例
+        int distinct = 50;//不同请求参数（图片地址）的数量，越小缓存命中和请求合并越多
+        double imageRatio = 0.3;//图片请求的比例
+        int threads = 2;//接口队列调度线程数，与HttpRequestUtil一致
+        int imageThreads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));//图片队列调度线程数
+        String policy = "app";//缓存策略：app（与各页面一致）、default、networkFirst、cacheFirst
+        long timeoutMs = 60 * 1000;//等待单个请求回调的最长时间
+        long seed = 1;//随机数种子
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int index = arg.indexOf('=');
+                if (index <= 0) {
+                    throw new IllegalArgumentException("Expected key=value: " + arg);
+                }
+                String key = arg.substring(0, index);
+                String value = arg.substring(index + 1);
+                if ("requests".equals(key)) {
+                    options.requests = Integer.parseInt(value);
+                } else if ("concurrency".equals(key)) {
+                    options.concurrency = Integer.parseInt(value);
+                } else if ("latency".equals(key)) {
+                    options.latencyMs = Integer.parseInt(value);
+                } else if ("jitter".equals(key)) {
+                    options.jitterMs = Integer.parseInt(value);
+                } else if ("errorRate".equals(key)) {
+                    options.errorRate = Double.parseDouble(value);
+                } else if ("distinct".equals(key)) {
+                    options.distinct = Integer.parseInt(value);
+                } else if ("imageRatio".equals(key)) {
+                    options.imageRatio = Double.parseDouble(value);
+                } else if ("threads".equals(key)) {
+                    options.threads = Integer.parseInt(value);
+                } else if ("imageThreads".equals(key)) {
+                    options.imageThreads = Integer.parseInt(value);
+                } else if ("policy".equals(key)) {
+                    options.policy = value;
+                } else if ("timeout".equals(key)) {
+                    options.timeoutMs = Long.parseLong(value);
+                } else if ("seed".equals(key)) {
+                    options.seed = Long.parseLong(value);
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + key);
+                }
+            }
+            // 提前检查缓存策略
+            options.getQueryPolicy();
+            return options;
+        }
+
+        /**
+         * @Description 事件列表的缓存策略，app与MainActivity一致
+         */
+        CachePolicy getQueryPolicy() {
+            return "app".equals(policy) ? CachePolicy.staleWhileRevalidate(60 * 60 * 1000L, 7 * 24 * 60 * 60 * 1000L) : getPolicy();
+        }
+
+        /**
+         * @Description 事件详情的缓存策略，app与TodayHistoryDetailActivity一致
+         */
+        CachePolicy getDetailPolicy() {
+            return "app".equals(policy) ? CachePolicy.cacheFirst(24 * 60 * 60 * 1000L) : getPolicy();
+        }
+
+        private CachePolicy getPolicy() {
+            if ("default".equals(policy)) {
+                return CachePolicy.DEFAULT;
+            } else if ("networkFirst".equals(policy)) {
+                return CachePolicy.networkFirst();
+            } else if ("cacheFirst".equals(policy)) {
+                return CachePolicy.cacheFirst(60 * 60 * 1000L);
+            }
+            throw new IllegalArgumentException("Unknown policy: " + policy);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "requests=%d concurrency=%d latency=%dms jitter=%dms errorRate=%.2f distinct=%d "
+                            + "imageRatio=%.2f threads=%d imageThreads=%d policy=%s",
+                    requests, concurrency, latencyMs, jitterMs, errorRate, distinct, imageRatio, threads, imageThreads, policy);
+        }
+    }
+}
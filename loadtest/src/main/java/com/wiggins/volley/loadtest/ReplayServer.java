@@ -0,0 +1,233 @@
+package com.wiggins.volley.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @Description 本地回放服务器：按路径返回录制的接口数据和图片，每次响应前按配置的延迟和抖动等待，可按比例返回503
+ * 支持gzip压缩，统计每个路径实际收到的请求数，用于和客户端发出的请求数对比缓存和相同请求合并的效果
+ * @Author 一花一世界
+ */
+public class ReplayServer {
+
+    public static final String QUERY_EVENT = "/todayOnhistory/queryEvent.php";//历史上的今天 - 事件列表
+    public static final String QUERY_DETAIL = "/todayOnhistory/queryDetail.php";//历史上的今天 - 事件详情
+    public static final String IMAGE = "/pic/";//事件图片
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor;
+    private final ConcurrentMap<String, AtomicLong> mHits = new ConcurrentHashMap<>();//各路径收到的请求数
+    private final Random mRandom = new Random();
+    private volatile int mLatencyMs;//响应延迟
+    private volatile int mJitterMs;//延迟的随机抖动上限
+    private volatile double mErrorRate;//返回503的比例
+
+    public ReplayServer(int latencyMs, int jitterMs, double errorRate) throws IOException {
+        mLatencyMs = latencyMs;
+        mJitterMs = jitterMs;
+        mErrorRate = errorRate;
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        mExecutor = Executors.newCachedThreadPool();
+        mServer.setExecutor(mExecutor);
+        mServer.createContext(QUERY_EVENT, new PayloadHandler(QUERY_EVENT, load("queryEvent.json"), "application/json;charset=utf-8", null));
+        mServer.createContext(QUERY_DETAIL, new PayloadHandler(QUERY_DETAIL, load("queryDetail.json"), "application/json;charset=utf-8", null));
+        mServer.createContext(IMAGE, new PayloadHandler(IMAGE, createImage(24 * 1024), "image/jpeg", "public, max-age=86400"));
+    }
+
+    public void start() {
+        mServer.start();
+    }
+
+    public void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @Description 服务器地址，示例：http://127.0.0.1:12345
+     */
+    public String getBaseUrl() {
+        InetSocketAddress address = mServer.getAddress();
+        return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort();
+    }
+
+    public void setLatency(int latencyMs, int jitterMs) {
+        mLatencyMs = latencyMs;
+        mJitterMs = jitterMs;
+    }
+
+    public void setErrorRate(double errorRate) {
+        mErrorRate = errorRate;
+    }
+
+    /**
+     * @Description 指定路径收到的请求数
+     */
+    public long getHits(String path) {
+        AtomicLong hits = mHits.get(path);
+        return hits == null ? 0 : hits.get();
+    }
+
+    public long getTotalHits() {
+        long total = 0;
+        for (AtomicLong hits : mHits.values()) {
+            total += hits.get();
+        }
+        return total;
+    }
+
+    public void resetHits() {
+        mHits.clear();
+    }
+
+    private void onHit(String path) {
+        AtomicLong hits = mHits.get(path);
+        if (hits == null) {
+            AtomicLong created = new AtomicLong();
+            hits = mHits.putIfAbsent(path, created);
+            if (hits == null) {
+                hits = created;
+            }
+        }
+        hits.incrementAndGet();
+    }
+
+    private int nextDelay() {
+        int jitter = mJitterMs;
+        synchronized (mRandom) {
+            return mLatencyMs + (jitter > 0 ? mRandom.nextInt(jitter + 1) : 0);
+        }
+    }
+
+    private boolean nextError() {
+        double errorRate = mErrorRate;
+        if (errorRate <= 0) {
+            return false;
+        }
+        synchronized (mRandom) {
+            return mRandom.nextDouble() < errorRate;
+        }
+    }
+
+    /**
+     * @Description 返回固定内容的处理器，按请求头决定是否使用gzip压缩
+     */
+    private class PayloadHandler implements HttpHandler {
+
+        private final String mPath;
+        private final byte[] mBody;//原始内容
+        private final byte[] mGzipBody;//gzip压缩后的内容，图片等不可压缩的内容为null
+        private final String mContentType;
+        private final String mCacheControl;//与线上一致：接口不返回缓存头，图片由CDN返回缓存头
+
+        PayloadHandler(String path, byte[] body, String contentType, String cacheControl) throws IOException {
+            mPath = path;
+            mBody = body;
+            mGzipBody = contentType.startsWith("image/") ? null : gzip(body);
+            mContentType = contentType;
+            mCacheControl = cacheControl;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                onHit(mPath);
+                drain(exchange.getRequestBody());
+                int delay = nextDelay();
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+                if (nextError()) {
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                }
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                boolean gzip = mGzipBody != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+                byte[] body = gzip ? mGzipBody : mBody;
+                exchange.getResponseHeaders().set("Content-Type", mContentType);
+                if (mCacheControl != null) {
+                    exchange.getResponseHeaders().set("Cache-Control", mCacheControl);
+                }
+                if (gzip) {
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[1024];
+        while (in.read(buffer) != -1) {
+            // 读完请求体后才能复用连接
+        }
+        in.close();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2 + 64);
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @Description 读取录制的接口数据，与benchmark模块共用resources/payloads目录
+     */
+    static byte[] load(String name) throws IOException {
+        InputStream in = ReplayServer.class.getResourceAsStream("/payloads/" + name);
+        if (in == null) {
+            throw new IOException("Payload not found: " + name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @Description 生成指定大小的图片数据，内容随机不可压缩，与JPEG图片的传输特征一致
+     */
+    private static byte[] createImage(int size) {
+        byte[] image = new byte[size];
+        new Random(size).nextBytes(image);
+        image[0] = (byte) 0xFF;
+        image[1] = (byte) 0xD8;
+        image[size - 2] = (byte) 0xFF;
+        image[size - 1] = (byte) 0xD9;
+        return image;
+    }
+}